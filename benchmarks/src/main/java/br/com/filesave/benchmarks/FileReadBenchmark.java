@@ -0,0 +1,146 @@
+package br.com.filesave.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import br.com.filesave.cache.FileContentCache;
+import br.com.filesave.model.FileContent;
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.storage.FilesystemFileStorage;
+
+/**
+ * The FileReadBenchmark class measures the latency of writing a file to a
+ * response from the filesystem storage and from the hot-file cache. Sample
+ * time mode reports the latency percentiles for each file size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileReadBenchmark {
+
+  @Param({ "1024", "65536", "1048576" })
+  private int size;
+
+  private Path directory;
+
+  private FilesystemFileStorage storage;
+
+  private FileContentCache cache;
+
+  private FileMetadata metadata;
+
+  @Setup
+  public void setUp() throws Exception {
+    byte[] data = new byte[size];
+    new Random(42).nextBytes(data);
+
+    directory = Files.createTempDirectory("filesave-benchmark");
+    storage = new FilesystemFileStorage(directory);
+    FileContent content = new FileContent();
+    storage.store(content, new ByteArrayInputStream(data), size);
+
+    cache = new FileContentCache(DataSize.ofMegabytes(64), DataSize.ofMegabytes(2));
+    metadata = new BenchmarkFileMetadata(UUID.randomUUID(), content.getStorageKey(), (long) size);
+    cache.transferTo(metadata, 0, size, OutputStream.nullOutputStream(), storage);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    FileSystemUtils.deleteRecursively(directory);
+  }
+
+  @Benchmark
+  public void filesystemStorage() throws Exception {
+    storage.transferTo(metadata, 0, size, OutputStream.nullOutputStream());
+  }
+
+  @Benchmark
+  public void cacheHit() throws Exception {
+    cache.transferTo(metadata, 0, size, OutputStream.nullOutputStream(), storage);
+  }
+
+  private record BenchmarkFileMetadata(UUID getContentId, String getStorageKey, Long getSize)
+      implements FileMetadata {
+
+    @Override
+    public UUID getId() {
+      return getContentId;
+    }
+
+    @Override
+    public String getUniqueName() {
+      return "benchmark.bin";
+    }
+
+    @Override
+    public String getOriginalName() {
+      return "benchmark.bin";
+    }
+
+    @Override
+    public String getType() {
+      return "application/octet-stream";
+    }
+
+    @Override
+    public Instant getUploadedAt() {
+      return null;
+    }
+
+    @Override
+    public String getChecksum() {
+      return null;
+    }
+
+    @Override
+    public String getEncoding() {
+      return null;
+    }
+
+    @Override
+    public Long getStoredSize() {
+      return getSize;
+    }
+
+    @Override
+    public Integer getSegment() {
+      return null;
+    }
+
+    @Override
+    public Long getSegmentOffset() {
+      return null;
+    }
+
+    @Override
+    public Instant getQuarantinedAt() {
+      return null;
+    }
+
+  }
+
+}
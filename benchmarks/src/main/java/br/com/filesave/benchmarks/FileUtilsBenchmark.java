@@ -0,0 +1,80 @@
+package br.com.filesave.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.rowset.serial.SerialBlob;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.filesave.utils.ChecksumInputStream;
+import br.com.filesave.utils.FileUtils;
+
+/**
+ * The FileUtilsBenchmark class measures the helpers on the upload and download
+ * paths: writing content through a stream-backed Blob, reading a range of a
+ * Blob, computing the checksum of an upload and formatting file sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileUtilsBenchmark {
+
+  @Param({ "1024", "1048576", "16777216" })
+  private int size;
+
+  private byte[] data;
+
+  private SerialBlob blob;
+
+  @Setup
+  public void setUp() throws Exception {
+    data = new byte[size];
+    new Random(42).nextBytes(data);
+    blob = new SerialBlob(data);
+  }
+
+  @Benchmark
+  public long createBlob() throws Exception {
+    try (InputStream in = FileUtils.createBlob(new ByteArrayInputStream(data), size).getBinaryStream()) {
+      return in.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+
+  @Benchmark
+  public long openBlobStream() throws Exception {
+    try (InputStream in = FileUtils.openBlobStream(blob, 0, size)) {
+      return in.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+
+  @Benchmark
+  public String checksum() throws Exception {
+    try (ChecksumInputStream in = new ChecksumInputStream(new ByteArrayInputStream(data))) {
+      in.transferTo(OutputStream.nullOutputStream());
+      return in.getChecksum();
+    }
+  }
+
+  @Benchmark
+  public String formatFileSize() {
+    return FileUtils.formatFileSize(size);
+  }
+
+}
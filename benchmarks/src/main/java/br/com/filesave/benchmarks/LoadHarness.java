@@ -0,0 +1,268 @@
+package br.com.filesave.benchmarks;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.filesave.FileSaveApplication;
+
+/**
+ * The LoadHarness class starts the application on a random port, backed by an
+ * in-memory H2 database and the filesystem storage, and drives it over HTTP.
+ * It reports the throughput and the latency percentiles of uploads and
+ * downloads for each file size, the cost of allocating names for a
+ * frequently uploaded file name and, optionally, the latency of small
+ * downloads while many slow clients hold connections open.
+ * 
+ * <p>
+ * The harness is configured with system properties:
+ * <ul>
+ * <li>{@code harness.sizes}: comma-separated file sizes in bytes.</li>
+ * <li>{@code harness.requests}: requests per scenario.</li>
+ * <li>{@code harness.concurrency}: concurrent clients per scenario.</li>
+ * <li>{@code harness.duplicate-names}: uploads with the same file name.</li>
+ * <li>{@code harness.slow-readers}: slow clients, 0 to skip the scenario.</li>
+ * <li>{@code harness.virtual-threads}: serve requests on virtual threads.</li>
+ * </ul>
+ */
+public class LoadHarness {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final HttpClient client = HttpClient.newBuilder()
+      .executor(Executors.newVirtualThreadPerTaskExecutor())
+      .build();
+
+  private final String baseUrl;
+
+  private final Random random = new Random(42);
+
+  private LoadHarness(String baseUrl) {
+    this.baseUrl = baseUrl;
+  }
+
+  public static void main(String[] args) throws Exception {
+    List<Integer> sizes = Arrays.stream(System.getProperty("harness.sizes", "1024,65536,1048576,16777216").split(","))
+        .map(String::trim)
+        .map(Integer::valueOf)
+        .toList();
+    int requests = Integer.getInteger("harness.requests", 200);
+    int concurrency = Integer.getInteger("harness.concurrency", 16);
+    int duplicateNames = Integer.getInteger("harness.duplicate-names", 1000);
+    int slowReaders = Integer.getInteger("harness.slow-readers", 0);
+    boolean virtualThreads = Boolean.parseBoolean(System.getProperty("harness.virtual-threads", "false"));
+
+    Path workDirectory = Files.createTempDirectory("filesave-harness");
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(FileSaveApplication.class)
+        .run("--server.port=0",
+            "--spring.jpa.database=H2",
+            "--spring.datasource.url=jdbc:h2:mem:filesave;DATABASE_TO_LOWER=TRUE",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.show-sql=false",
+            "--file.storage.type=filesystem",
+            "--file.storage.directory=" + workDirectory.resolve("storage"),
+            "--file.upload.session.directory=" + workDirectory.resolve("uploads"),
+            "--spring.threads.virtual.enabled=" + virtualThreads,
+            "--backend.base-url=http://localhost",
+            "--logging.level.root=WARN");
+    try {
+      int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+      LoadHarness harness = new LoadHarness("http://localhost:" + port + "/api/file");
+
+      for (int size : sizes) {
+        harness.transfer(size, requests, concurrency);
+      }
+      harness.duplicateNames(duplicateNames);
+      if (slowReaders > 0) {
+        harness.slowReaders(slowReaders, requests, concurrency);
+      }
+    } finally {
+      context.close();
+      FileSystemUtils.deleteRecursively(workDirectory);
+    }
+  }
+
+  /**
+   * The function uploads and then downloads files of the given size with
+   * distinct content, so the deduplication never short-circuits the storage.
+   */
+  private void transfer(int size, int requests, int concurrency) throws Exception {
+    byte[] content = new byte[size];
+    random.nextBytes(content);
+    String[] names = new String[requests];
+
+    run("upload " + size + "B", requests, concurrency, size, i -> {
+      byte[] data = content.clone();
+      writeInt(data, i);
+      names[i] = upload("file-" + size + ".bin", data);
+    });
+    run("download " + size + "B", requests, concurrency, size, i -> download(names[i]));
+  }
+
+  /**
+   * The function uploads many files with the same name in sequence and reports
+   * the latency of each block of uploads. The name allocation is a single
+   * round-trip, so the latency should not grow with the number of copies.
+   */
+  private void duplicateNames(int uploads) throws Exception {
+    int blocks = 5;
+    int perBlock = Math.max(1, uploads / blocks);
+    AtomicInteger counter = new AtomicInteger();
+    for (int block = 0; block < blocks; block++) {
+      run("duplicate name " + (block * perBlock) + "-" + ((block + 1) * perBlock), perBlock, 1, 64, i -> {
+        byte[] data = new byte[64];
+        writeInt(data, counter.incrementAndGet());
+        upload("invoice.pdf", data);
+      });
+    }
+  }
+
+  /**
+   * The function opens many downloads that read one chunk at a time with a
+   * pause between chunks and, while they are held open, measures the latency
+   * of small downloads. On platform threads the slow clients occupy the
+   * request threads; on virtual threads they should not.
+   */
+  private void slowReaders(int readers, int requests, int concurrency) throws Exception {
+    byte[] large = new byte[1024 * 1024];
+    random.nextBytes(large);
+    String largeName = upload("slow.bin", large);
+    byte[] small = new byte[1024];
+    random.nextBytes(small);
+    String smallName = upload("fast.bin", small);
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < readers; i++) {
+        executor.submit(() -> {
+          HttpResponse<InputStream> response = client.send(
+              HttpRequest.newBuilder(URI.create(baseUrl + "/download/" + largeName)).build(),
+              BodyHandlers.ofInputStream());
+          try (InputStream in = response.body()) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+              Thread.sleep(100);
+            }
+          }
+          return null;
+        });
+      }
+      TimeUnit.SECONDS.sleep(1);
+      run("download with " + readers + " slow readers", requests, concurrency, small.length,
+          i -> download(smallName));
+      executor.shutdownNow();
+    }
+  }
+
+  private String upload(String fileName, byte[] data) throws Exception {
+    String boundary = "filesave-" + UUID.randomUUID();
+    byte[] head = ("--" + boundary + "\r\n"
+        + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+        + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/upload"))
+        .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+        .POST(BodyPublishers.ofByteArrays(List.of(head, data, tail)))
+        .build();
+    HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Upload failed with status " + response.statusCode() + ": " + response.body());
+    }
+    return MAPPER.readTree(response.body()).get("uniqueName").asText();
+  }
+
+  private void download(String uniqueName) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/download/" + uniqueName)).build();
+    HttpResponse<Void> response = client.send(request, BodyHandlers.discarding());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Download failed with status " + response.statusCode());
+    }
+  }
+
+  /**
+   * The function runs a task the given number of times over a fixed number of
+   * concurrent clients and prints the throughput and latency percentiles.
+   */
+  private void run(String scenario, int requests, int concurrency, long bytesPerRequest, Task task)
+      throws InterruptedException {
+    long[] latencies = new long[requests];
+    AtomicInteger next = new AtomicInteger();
+    AtomicInteger failures = new AtomicInteger();
+    List<String> errors = new ArrayList<>();
+
+    long start = System.nanoTime();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int client = 0; client < concurrency; client++) {
+        executor.submit(() -> {
+          int i;
+          while ((i = next.getAndIncrement()) < requests) {
+            long begin = System.nanoTime();
+            try {
+              task.run(i);
+            } catch (Exception e) {
+              if (failures.incrementAndGet() <= 3) {
+                synchronized (errors) {
+                  errors.add(e.getMessage());
+                }
+              }
+            }
+            latencies[i] = System.nanoTime() - begin;
+          }
+        });
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    Arrays.sort(latencies);
+    System.out.printf("%-40s %8.1f req/s %9.2f MB/s  p50 %8.2f ms  p90 %8.2f ms  p99 %8.2f ms  failures %d%n",
+        scenario,
+        requests / seconds,
+        requests * bytesPerRequest / seconds / (1024 * 1024),
+        percentile(latencies, 0.50),
+        percentile(latencies, 0.90),
+        percentile(latencies, 0.99),
+        failures.get());
+    errors.forEach(error -> System.out.println("  " + error));
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    int index = (int) Math.ceil(percentile * sorted.length) - 1;
+    return sorted[Math.max(0, index)] / 1e6;
+  }
+
+  private static void writeInt(byte[] data, int value) {
+    for (int i = 0; i < Math.min(4, data.length); i++) {
+      data[i] = (byte) (value >>> (8 * i));
+    }
+  }
+
+  @FunctionalInterface
+  private interface Task {
+    void run(int index) throws Exception;
+  }
+
+}
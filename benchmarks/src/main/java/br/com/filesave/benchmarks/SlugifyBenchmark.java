@@ -0,0 +1,47 @@
+package br.com.filesave.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.slugify.Slugify;
+
+/**
+ * The SlugifyBenchmark class measures the slugification done for every upload
+ * before a unique name is allocated. The allocation itself needs the database
+ * and is measured by the {@link LoadHarness}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlugifyBenchmark {
+
+  @Param({ "invoice", "Relatório Final de Atividades 2023 (cópia)" })
+  private String name;
+
+  private Slugify slugify;
+
+  @Setup
+  public void setUp() {
+    slugify = new Slugify();
+  }
+
+  @Benchmark
+  public String slugify() {
+    return slugify.slugify(name);
+  }
+
+}
@@ -0,0 +1,129 @@
+package br.com.filesave.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.filesave.FileSaveApplication;
+
+/**
+ * The StartupBenchmark class measures what a cold instance costs before it is
+ * useful: the time from the start of the JVM until the application is ready,
+ * the latency of its first upload and first download, and the resident set
+ * size of the process afterwards. The application is started like in the
+ * {@link LoadHarness}, with an in-memory H2 database and the filesystem
+ * storage. Each JVM gives a single measurement, so the {@code startup} profile
+ * of the benchmarks build runs it in fresh JVMs, with and without a class data
+ * sharing archive.
+ *
+ * <p>
+ * The benchmark is configured with system properties:
+ * <ul>
+ * <li>{@code startup.label}: the name of the measurement in the report.</li>
+ * <li>{@code startup.size}: the size in bytes of the file uploaded.</li>
+ * </ul>
+ */
+public class StartupBenchmark {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  public static void main(String[] args) throws Exception {
+    String label = System.getProperty("startup.label", "default");
+    int size = Integer.getInteger("startup.size", 1048576);
+
+    Path workDirectory = Files.createTempDirectory("filesave-startup");
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(FileSaveApplication.class)
+        .run("--server.port=0",
+            "--spring.jpa.database=H2",
+            "--spring.datasource.url=jdbc:h2:mem:filesave;DATABASE_TO_LOWER=TRUE",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.show-sql=false",
+            "--file.storage.type=filesystem",
+            "--file.storage.directory=" + workDirectory.resolve("storage"),
+            "--file.upload.session.directory=" + workDirectory.resolve("uploads"),
+            "--backend.base-url=http://localhost",
+            "--logging.level.root=WARN");
+    long ready = ManagementFactory.getRuntimeMXBean().getUptime();
+    try {
+      int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+      String baseUrl = "http://localhost:" + port + "/api/file";
+      HttpClient client = HttpClient.newHttpClient();
+
+      long start = System.nanoTime();
+      String name = upload(client, baseUrl, new byte[size]);
+      double upload = (System.nanoTime() - start) / 1_000_000.0;
+
+      start = System.nanoTime();
+      HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/download/" + name))
+          .build(), BodyHandlers.discarding());
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException("Download failed with status " + response.statusCode());
+      }
+      double download = (System.nanoTime() - start) / 1_000_000.0;
+
+      System.out.printf("%-16s ready %6d ms  first upload %8.2f ms  first download %8.2f ms  "
+          + "RSS %7.1f MB  peak RSS %7.1f MB%n",
+          label, ready, upload, download, memory("VmRSS"), memory("VmHWM"));
+    } finally {
+      context.close();
+      FileSystemUtils.deleteRecursively(workDirectory);
+    }
+  }
+
+  private static String upload(HttpClient client, String baseUrl, byte[] data) throws Exception {
+    String boundary = "filesave-" + UUID.randomUUID();
+    byte[] head = ("--" + boundary + "\r\n"
+        + "Content-Disposition: form-data; name=\"file\"; filename=\"startup.bin\"\r\n"
+        + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/upload"))
+        .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+        .POST(BodyPublishers.ofByteArrays(List.of(head, data, tail)))
+        .build();
+    HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Upload failed with status " + response.statusCode() + ": " + response.body());
+    }
+    return MAPPER.readTree(response.body()).get("uniqueName").asText();
+  }
+
+  /**
+   * The function reads a memory figure of the process from
+   * {@code /proc/self/status}, which only exists on Linux.
+   *
+   * @param field The name of the field, such as VmRSS.
+   * @return The method is returning the figure in megabytes, or NaN when it
+   *         cannot be read.
+   */
+  private static double memory(String field) {
+    try {
+      return Files.readAllLines(Path.of("/proc/self/status")).stream()
+          .filter(line -> line.startsWith(field + ":"))
+          .map(line -> line.substring(field.length() + 1).trim().split("\\s+")[0])
+          .mapToDouble(kilobytes -> Long.parseLong(kilobytes) / 1024.0)
+          .findFirst()
+          .orElse(Double.NaN);
+    } catch (Exception e) {
+      return Double.NaN;
+    }
+  }
+
+}
@@ -1,22 +1,32 @@
 package br.com.filesave.DTOs;
 
+import java.time.Instant;
+
 import org.springframework.http.MediaType;
 
+import br.com.filesave.model.FileMetadata;
 import lombok.Data;
 
 /**
- * The DownloadFileResult class represents the result of downloading a file, including the original
- * file name, file data, and media type.
+ * The DownloadFileResult class represents the result of looking up a file for download, including
+ * the file metadata, original file name, media type and content length. The content itself is not
+ * loaded; it is streamed from storage when the response is written. A result that is not immutable
+ * stands in for content that does not exist yet and must not be cached for long. A result with an
+ * expiry time was reached through a pre-signed URL and must not be cached past it.
  */
 @Data
 public class DownloadFileResult {
+    private FileMetadata metadata;
     private String originalFileName;
-    private byte[] fileData;
     private MediaType mediaType;
+    private long fileSize;
+    private boolean immutable = true;
+    private Instant expiresAt;
 
-    public DownloadFileResult(String originalFileName, byte[] fileData, MediaType mediaType) {
-        this.originalFileName = originalFileName;
-        this.fileData = fileData;
+    public DownloadFileResult(FileMetadata metadata, MediaType mediaType, long fileSize) {
+        this.metadata = metadata;
+        this.originalFileName = metadata.getOriginalName();
         this.mediaType = mediaType;
+        this.fileSize = fileSize;
     }
 }
@@ -0,0 +1,32 @@
+package br.com.filesave.DTOs;
+
+import java.time.Instant;
+
+import lombok.Data;
+
+@Data
+public class FileMetadataResponse {
+  private String uniqueName;
+  private String originalName;
+  private String type;
+  private long size;
+  private String fileSize;
+  private String checksum;
+  private Instant uploadedAt;
+  private String fileDownloadUrl;
+  private String fileViewUrl;
+
+  public FileMetadataResponse(String uniqueName, String originalName, String type, long size, String fileSize,
+      String checksum, Instant uploadedAt, String fileDownloadUrl, String fileViewUrl) {
+    this.uniqueName = uniqueName;
+    this.originalName = originalName;
+    this.type = type;
+    this.size = size;
+    this.fileSize = fileSize;
+    this.checksum = checksum;
+    this.uploadedAt = uploadedAt;
+    this.fileDownloadUrl = fileDownloadUrl;
+    this.fileViewUrl = fileViewUrl;
+  }
+
+}
@@ -0,0 +1,21 @@
+package br.com.filesave.DTOs;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * The FilePageResponse class represents a page of a file listing. The next
+ * page is requested with {@code nextCursor}, which is null on the last page.
+ */
+@Data
+public class FilePageResponse {
+  private List<FileMetadataResponse> files;
+  private String nextCursor;
+
+  public FilePageResponse(List<FileMetadataResponse> files, String nextCursor) {
+    this.files = files;
+    this.nextCursor = nextCursor;
+  }
+
+}
@@ -0,0 +1,22 @@
+package br.com.filesave.DTOs;
+
+import java.time.Instant;
+
+import lombok.Data;
+
+/**
+ * The FileSearchRequest class holds the filters of a file listing. Every
+ * filter is optional; {@code cursor} is the value returned with the previous
+ * page, or null for the first page.
+ */
+@Data
+public class FileSearchRequest {
+  private String name;
+  private String type;
+  private Long minSize;
+  private Long maxSize;
+  private Instant uploadedFrom;
+  private Instant uploadedTo;
+  private String cursor;
+  private Integer limit;
+}
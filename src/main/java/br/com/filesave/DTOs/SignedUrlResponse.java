@@ -0,0 +1,21 @@
+package br.com.filesave.DTOs;
+
+import java.time.Instant;
+
+import lombok.Data;
+
+/**
+ * The SignedUrlResponse class represents a pre-signed download URL and the
+ * time it stops working.
+ */
+@Data
+public class SignedUrlResponse {
+  private String url;
+  private Instant expiresAt;
+
+  public SignedUrlResponse(String url, Instant expiresAt) {
+    this.url = url;
+    this.expiresAt = expiresAt;
+  }
+
+}
@@ -0,0 +1,10 @@
+package br.com.filesave.DTOs;
+
+import lombok.Data;
+
+@Data
+public class UploadSessionRequest {
+  private String fileName;
+  private String contentType;
+  private long size;
+}
@@ -0,0 +1,35 @@
+package br.com.filesave.DTOs;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import lombok.Data;
+
+/**
+ * The UploadSessionResponse class represents the state of a resumable upload,
+ * including the chunk size the client must use and the chunks already
+ * received.
+ */
+@Data
+public class UploadSessionResponse {
+  private UUID sessionId;
+  private String fileName;
+  private long size;
+  private long chunkSize;
+  private int chunkCount;
+  private List<Integer> receivedChunks;
+  private Instant expiresAt;
+
+  public UploadSessionResponse(UUID sessionId, String fileName, long size, long chunkSize, int chunkCount,
+      List<Integer> receivedChunks, Instant expiresAt) {
+    this.sessionId = sessionId;
+    this.fileName = fileName;
+    this.size = size;
+    this.chunkSize = chunkSize;
+    this.chunkCount = chunkCount;
+    this.receivedChunks = receivedChunks;
+    this.expiresAt = expiresAt;
+  }
+
+}
@@ -0,0 +1,195 @@
+package br.com.filesave.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.storage.FileStorage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The FileContentCache class keeps the content of small, frequently read files
+ * in memory, keyed by their content id, so files sharing deduplicated content
+ * share an entry. Content is immutable once stored, so entries only need to
+ * be invalidated when the content is recompressed on its way to the cold
+ * tier. The content is held in direct buffers,
+ * outside the Java heap, and the cache is bounded by the total number of bytes
+ * it holds; Caffeine's W-TinyLFU policy decides what to evict. Files larger
+ * than {@code file.cache.max-entry-size} bypass the cache. Compressed content
+ * is cached as it is stored, so it costs its compressed size. The hit, miss and
+ * eviction statistics and the bytes held are published as metrics.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "file.cache.enabled", havingValue = "true")
+public class FileContentCache implements MeterBinder {
+
+  private final AsyncCache<UUID, ByteBuffer> cache;
+
+  private final long maxEntrySize;
+
+  public FileContentCache(@Value("${file.cache.max-size}") DataSize maxSize,
+      @Value("${file.cache.max-entry-size}") DataSize maxEntrySize) {
+    this.maxEntrySize = Math.min(maxEntrySize.toBytes(), Integer.MAX_VALUE);
+    this.cache = Caffeine.newBuilder()
+        .maximumWeight(maxSize.toBytes())
+        .weigher((UUID contentId, ByteBuffer content) -> content.capacity())
+        .removalListener((UUID contentId, ByteBuffer content, RemovalCause cause) -> log
+            .debug("Content {} removed from cache: {}", contentId, cause))
+        .recordStats()
+        .buildAsync();
+  }
+
+  /**
+   * The function checks if a file is small enough to be kept in the cache.
+   * 
+   * @param file The metadata of the file.
+   * @return The method is returning true if the file can be cached.
+   */
+  public boolean accepts(FileMetadata file) {
+    return file.getStoredLength() != null && file.getStoredLength() <= maxEntrySize;
+  }
+
+  /**
+   * The function writes a range of a file's content from the cache, loading
+   * the whole file from the storage first when it is not cached yet.
+   * Concurrent requests for the same missing file wait for a single load,
+   * which fails them all if it fails. The load runs in the calling thread,
+   * outside any lock of the cache, so a virtual thread waiting on storage I/O
+   * never pins its carrier thread.
+   * 
+   * @param file     The metadata of the file, which must be accepted by
+   *                 {@link #accepts(FileMetadata)}.
+   * @param position The zero-based offset of the first byte to write.
+   * @param length   The number of bytes to write.
+   * @param out      The stream the content is written to.
+   * @param storage  The storage the file is loaded from on a cache miss.
+   */
+  public void transferTo(FileMetadata file, long position, long length, OutputStream out, FileStorage storage)
+      throws IOException {
+    // A função só cria o future; a carga roda fora do compute, sem travar o cache
+    CompletableFuture<ByteBuffer> loading = new CompletableFuture<>();
+    CompletableFuture<ByteBuffer> cached = cache.get(file.getContentId(), (contentId, executor) -> loading);
+    if (cached == loading) {
+      try {
+        loading.complete(load(file, storage));
+      } catch (Throwable e) {
+        // O Caffeine remove do cache as cargas que terminam com erro
+        loading.completeExceptionally(e);
+      }
+    }
+
+    ByteBuffer content;
+    try {
+      content = cached.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException ioException) {
+        throw ioException.getCause();
+      }
+      if (e.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw e;
+    }
+
+    ByteBuffer range = content.duplicate()
+        .position((int) position)
+        .limit((int) (position + length));
+    Channels.newChannel(out).write(range);
+  }
+
+  /**
+   * The function removes a content from the cache, so it is loaded again with
+   * the encoding it is now stored with.
+   * 
+   * @param contentId The id of the content.
+   */
+  public void invalidate(UUID contentId) {
+    cache.synchronous().invalidate(contentId);
+  }
+
+  /**
+   * The function returns the hit, miss and eviction statistics of the cache.
+   * 
+   * @return The method is returning a snapshot of the cache statistics.
+   */
+  public CacheStats getStats() {
+    return cache.synchronous().stats();
+  }
+
+  /**
+   * The function returns the number of bytes of content held in the cache.
+   * 
+   * @return The method is returning the total size of the cached content.
+   */
+  public long getWeightedSize() {
+    return cache.synchronous().policy().eviction()
+        .map(eviction -> eviction.weightedSize().orElse(0))
+        .orElse(0L);
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, "file-content");
+    Gauge.builder("filesave.cache.size", this, FileContentCache::getWeightedSize)
+        .description("Bytes of file content held in the cache")
+        .baseUnit("bytes")
+        .register(registry);
+  }
+
+  private ByteBuffer load(FileMetadata file, FileStorage storage) {
+    ByteBuffer content = ByteBuffer.allocateDirect(file.getStoredLength().intValue());
+    try {
+      storage.transferTo(file, 0, file.getStoredLength(), new ByteBufferOutputStream(content));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return content.flip().asReadOnlyBuffer();
+  }
+
+  /**
+   * The ByteBufferOutputStream class writes into a buffer, so content loaded
+   * from the storage goes straight into the direct buffer without an
+   * intermediate copy on the heap.
+   */
+  private static class ByteBufferOutputStream extends OutputStream {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferOutputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+      buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      buffer.put(b, off, len);
+    }
+
+  }
+
+}
@@ -0,0 +1,91 @@
+package br.com.filesave.config;
+
+import java.sql.DatabaseMetaData;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The FileSearchIndexes class creates the indexes that cannot be declared on
+ * the entities. On PostgreSQL, a {@code LIKE 'prefix%'} only uses a B-tree
+ * index built with {@code varchar_pattern_ops}, unless the database uses the
+ * C collation, so the name prefix filter of the file listing gets one of its
+ * own. The checksum of a content is unique only outside quarantine, which
+ * deduplication relies on: PostgreSQL gets a partial unique index, and H2,
+ * which has no partial indexes, a unique index on a column generated with the
+ * checksum of the contents not quarantined. When the schema is managed by
+ * Flyway, as in the {@code prod} profile, the indexes are created by the
+ * migrations and this class is not loaded.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "spring.flyway.enabled", havingValue = "false")
+public class FileSearchIndexes implements ApplicationRunner {
+
+  /*
+   * Bancos criados pelo ddl-auto antes do índice parcial têm uma constraint
+   * única no checksum, que impede gravar de novo um conteúdo em quarentena.
+   */
+  private static final String POSTGRESQL_DROP_CHECKSUM_CONSTRAINTS = """
+      DO $$
+      DECLARE
+        constraint_to_drop text;
+      BEGIN
+        FOR constraint_to_drop IN
+          SELECT c.conname FROM pg_constraint c
+          JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1]
+          WHERE c.conrelid = 'file_contents'::regclass AND c.contype = 'u'
+            AND cardinality(c.conkey) = 1 AND a.attname = 'checksum'
+        LOOP
+          EXECUTE format('ALTER TABLE file_contents DROP CONSTRAINT %I', constraint_to_drop);
+        END LOOP;
+      END $$""";
+
+  private static final String POSTGRESQL_CHECKSUM_INDEX = "CREATE UNIQUE INDEX IF NOT EXISTS "
+      + "file_contents_checksum_active_idx ON file_contents (checksum) WHERE quarantined_at IS NULL";
+
+  private static final String H2_ACTIVE_CHECKSUM_COLUMN = "ALTER TABLE file_contents ADD COLUMN IF NOT EXISTS "
+      + "active_checksum VARCHAR(255) GENERATED ALWAYS AS "
+      + "(CASE WHEN quarantined_at IS NULL THEN checksum END)";
+
+  private static final String H2_CHECKSUM_INDEX = "CREATE UNIQUE INDEX IF NOT EXISTS "
+      + "file_contents_checksum_active_idx ON file_contents (active_checksum)";
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Override
+  public void run(ApplicationArguments args) throws MetaDataAccessException {
+    String databaseName = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+        DatabaseMetaData::getDatabaseProductName);
+    if ("PostgreSQL".equals(databaseName)) {
+      jdbcTemplate.execute(
+          "CREATE INDEX IF NOT EXISTS files_unique_name_prefix_idx ON files (unique_name varchar_pattern_ops)");
+      createChecksumIndex(POSTGRESQL_DROP_CHECKSUM_CONSTRAINTS, POSTGRESQL_CHECKSUM_INDEX);
+    } else if ("H2".equals(databaseName)) {
+      createChecksumIndex(H2_ACTIVE_CHECKSUM_COLUMN, H2_CHECKSUM_INDEX);
+    }
+  }
+
+  private void createChecksumIndex(String... statements) {
+    try {
+      for (String statement : statements) {
+        jdbcTemplate.execute(statement);
+      }
+    } catch (DataAccessException e) {
+      // Conteúdos duplicados gravados sem o índice impedem criá-lo; o upload continua funcionando
+      log.error("Could not make the checksum of the contents unique, identical uploads may be stored twice: {}",
+          e.getMessage());
+    }
+  }
+
+}
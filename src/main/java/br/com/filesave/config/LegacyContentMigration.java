@@ -0,0 +1,49 @@
+package br.com.filesave.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The LegacyContentMigration class moves the content of files uploaded before
+ * the {@code file_contents} table existed, which was kept in the {@code file}
+ * column of the {@code files} table. The large object itself is not copied: the
+ * new row points to the same oid. When the schema is managed by Flyway, as in
+ * the {@code prod} profile, the {@code V2} migration does the same and this
+ * class is not loaded.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "spring.flyway.enabled", havingValue = "false")
+public class LegacyContentMigration implements ApplicationRunner {
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Override
+  @Transactional
+  public void run(ApplicationArguments args) {
+    Integer legacyColumns = jdbcTemplate.queryForObject(
+        "SELECT count(*) FROM information_schema.columns WHERE table_name = 'files' AND column_name = 'file'",
+        Integer.class);
+    if (legacyColumns == null || legacyColumns == 0) {
+      return;
+    }
+
+    int migrated = jdbcTemplate.update("""
+        INSERT INTO file_contents (id, size, reference_count, data)
+        SELECT id, size, 1, file FROM files WHERE content_id IS NULL AND file IS NOT NULL""");
+    jdbcTemplate.update("UPDATE files SET content_id = id, file = NULL WHERE content_id IS NULL AND file IS NOT NULL");
+
+    if (migrated > 0) {
+      log.info("Migrated the content of {} files to file_contents", migrated);
+    }
+  }
+
+}
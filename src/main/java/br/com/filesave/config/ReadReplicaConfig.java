@@ -0,0 +1,70 @@
+package br.com.filesave.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The ReadReplicaConfig class replaces the data source when read replicas are
+ * listed in {@code file.datasource.replica-urls}. The primary keeps the
+ * {@code spring.datasource} settings; each replica gets its own connection
+ * pool, with the same credentials, named {@code replica-N} in the pool
+ * metrics. Read-only transactions go to the replicas and everything else to
+ * the primary.
+ */
+@Configuration
+@ConditionalOnExpression("'${file.datasource.replica-urls:}' != ''")
+public class ReadReplicaConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public ReplicaRoutingDataSource routingDataSource(HikariDataSource primaryDataSource,
+      DataSourceProperties properties,
+      @Value("${file.datasource.replica-urls}") List<String> replicaUrls,
+      @Value("${file.datasource.replica-pool-size}") int poolSize,
+      ObjectProvider<MeterRegistry> meterRegistry) {
+    List<HikariDataSource> replicas = new ArrayList<>();
+    for (String url : replicaUrls) {
+      HikariDataSource replica = new HikariDataSource();
+      replica.setPoolName("replica-" + replicas.size());
+      replica.setJdbcUrl(url.trim());
+      replica.setUsername(properties.determineUsername());
+      replica.setPassword(properties.determinePassword());
+      replica.setMaximumPoolSize(poolSize);
+      replica.setConnectionTimeout(primaryDataSource.getConnectionTimeout());
+      replica.setReadOnly(true);
+      meterRegistry.ifAvailable(registry -> replica.setMetricsTrackerFactory(
+          new MicrometerMetricsTrackerFactory(registry)));
+      replicas.add(replica);
+    }
+    return new ReplicaRoutingDataSource(primaryDataSource, replicas);
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+    return new LazyConnectionDataSourceProxy(routingDataSource);
+  }
+
+}
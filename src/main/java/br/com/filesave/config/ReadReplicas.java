@@ -0,0 +1,53 @@
+package br.com.filesave.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The ReadReplicas class lets reads that found nothing on a read replica be
+ * repeated on the primary. Replicas lag a little behind the primary, so a
+ * file uploaded a moment ago may not be on them yet; repeating the read in a
+ * new read-write transaction, which always goes to the primary, keeps such a
+ * file from being reported as missing.
+ */
+@Component
+public class ReadReplicas {
+
+  private final boolean enabled;
+
+  private final TransactionTemplate primaryTransaction;
+
+  public ReadReplicas(@Value("${file.datasource.replica-urls}") List<String> replicaUrls,
+      PlatformTransactionManager transactionManager) {
+    this.enabled = !replicaUrls.isEmpty();
+    this.primaryTransaction = new TransactionTemplate(transactionManager);
+    this.primaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  /**
+   * The function checks if reads may be served by a replica, in which case
+   * they may miss the latest writes.
+   * 
+   * @return The method is returning true if read replicas are configured.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * The function runs a read on the primary, in a new transaction.
+   * 
+   * @param read The read to be run.
+   * @return The method is returning the result of the read.
+   */
+  public <T> T fromPrimary(TransactionCallback<T> read) {
+    return primaryTransaction.execute(read);
+  }
+
+}
@@ -0,0 +1,64 @@
+package br.com.filesave.config;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * The ReplicaRoutingDataSource class sends the connections of read-only
+ * transactions to the read replicas, taking turns between them, and every
+ * other connection to the primary. The transaction is only known to be
+ * read-only once it has started, so this data source must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * which only asks for the connection when the first statement runs.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+  private static final String PRIMARY = "primary";
+
+  private final DataSource primary;
+
+  private final List<HikariDataSource> replicas;
+
+  private final AtomicInteger next = new AtomicInteger();
+
+  public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicas) {
+    this.primary = primary;
+    this.replicas = replicas;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    Map<Object, Object> targets = new HashMap<>();
+    targets.put(PRIMARY, primary);
+    for (int i = 0; i < replicas.size(); i++) {
+      targets.put(i, replicas.get(i));
+    }
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(primary);
+    super.afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      return PRIMARY;
+    }
+    return Math.floorMod(next.getAndIncrement(), replicas.size());
+  }
+
+  @Override
+  public void destroy() {
+    replicas.forEach(HikariDataSource::close);
+  }
+
+}
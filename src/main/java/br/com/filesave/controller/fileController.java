@@ -1,27 +1,49 @@
 package br.com.filesave.controller;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import br.com.filesave.DTOs.DownloadFileResult;
+import br.com.filesave.DTOs.FileMetadataResponse;
+import br.com.filesave.DTOs.FilePageResponse;
+import br.com.filesave.DTOs.FileSearchRequest;
+import br.com.filesave.DTOs.SignedUrlResponse;
 import br.com.filesave.DTOs.UploadFileResponse;
+import br.com.filesave.DTOs.UploadSessionRequest;
+import br.com.filesave.DTOs.UploadSessionResponse;
 import br.com.filesave.exception.ApiError;
-import br.com.filesave.exception.FileException;
+import br.com.filesave.metrics.FileMetrics;
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.service.ArchiveService;
+import br.com.filesave.service.FileAccessTracker;
 import br.com.filesave.service.FileService;
+import br.com.filesave.service.SignedUrlService;
+import br.com.filesave.service.UploadSessionService;
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping("/api/file")
@@ -30,6 +52,21 @@ public class fileController {
   @Autowired
   private FileService fileService;
 
+  @Autowired
+  private UploadSessionService uploadSessionService;
+
+  @Autowired
+  private SignedUrlService signedUrlService;
+
+  @Autowired
+  private ArchiveService archiveService;
+
+  @Autowired
+  private FileAccessTracker fileAccessTracker;
+
+  @Autowired
+  private FileMetrics fileMetrics;
+
   /**
    * The function handles a POST request to upload a file and returns the uploaded
    * file's name.
@@ -42,7 +79,7 @@ public class fileController {
   @PostMapping("/upload")
   public ResponseEntity<Object> uploadFile(@RequestParam("file") MultipartFile file) throws IOException {
     try {
-      UploadFileResponse uploadedFile = fileService.uploadFile(file);
+      UploadFileResponse uploadedFile = fileMetrics.operation("upload", () -> fileService.uploadFile(file));
       return ResponseEntity.status(HttpStatus.OK).body(uploadedFile);
     } catch (Exception e) {
       return ResponseEntity.unprocessableEntity()
@@ -50,67 +87,421 @@ public class fileController {
     }
   }
 
+  /**
+   * The function handles a POST request to upload many files at once and
+   * returns the information of each uploaded file.
+   * 
+   * @param files The files sent in the "files" parts of a multipart request.
+   * @return The method is returning a ResponseEntity object.
+   */
+  @PostMapping("/upload/batch")
+  public ResponseEntity<Object> uploadFiles(@RequestParam("files") List<MultipartFile> files) {
+    try {
+      List<UploadFileResponse> uploadedFiles = fileMetrics.operation("upload-batch",
+          () -> fileService.uploadFiles(files));
+      return ResponseEntity.status(HttpStatus.OK).body(uploadedFiles);
+    } catch (Exception e) {
+      return ResponseEntity.unprocessableEntity()
+          .body(new ApiError(HttpStatus.UNPROCESSABLE_ENTITY, "Unprocessable Entity", e.getLocalizedMessage()));
+    }
+  }
+
+  /**
+   * The function returns the metadata of many files, looked up by their
+   * unique names. Names that do not match a file are left out.
+   * 
+   * @param names The unique names of the files.
+   * @return The method is returning a ResponseEntity with the metadata found.
+   */
+  @GetMapping("/metadata")
+  public ResponseEntity<List<FileMetadataResponse>> getFilesMetadata(@RequestParam("names") List<String> names) {
+    return ResponseEntity.ok(fileService.getFilesMetadata(names));
+  }
+
+  /**
+   * The function lists the files, newest first, one page at a time. Files can
+   * be filtered by a prefix of the unique name, the media type, a size range
+   * in bytes and an upload time range; the next page is requested with the
+   * `cursor` returned with the current one.
+   * 
+   * @param search The filters, the cursor and the number of files per page.
+   * @return The method is returning a ResponseEntity with the page of files.
+   */
+  @GetMapping("/list")
+  public ResponseEntity<FilePageResponse> listFiles(FileSearchRequest search) {
+    return ResponseEntity.ok(fileMetrics.operation("list", () -> fileService.listFiles(search)));
+  }
+
+  /**
+   * The function `createUploadSession` starts a resumable upload. The client
+   * then sends the file in chunks of the returned size, in any order and in
+   * parallel, and completes the session.
+   * 
+   * @param request The name, media type and size of the file to be uploaded.
+   * @return The method is returning a ResponseEntity with the session state.
+   */
+  @PostMapping("/upload/sessions")
+  public ResponseEntity<UploadSessionResponse> createUploadSession(@RequestBody UploadSessionRequest request)
+      throws IOException {
+    return ResponseEntity.status(HttpStatus.CREATED).body(uploadSessionService.createSession(request));
+  }
+
+  /**
+   * The function `getUploadSession` returns the state of a resumable upload,
+   * including the chunks already received.
+   * 
+   * @param sessionId The id of the upload session.
+   * @return The method is returning a ResponseEntity with the session state.
+   */
+  @GetMapping("/upload/sessions/{sessionId}")
+  public ResponseEntity<UploadSessionResponse> getUploadSession(@PathVariable UUID sessionId) throws IOException {
+    return ResponseEntity.ok(uploadSessionService.getSession(sessionId));
+  }
+
+  /**
+   * The function `uploadChunk` receives one chunk of a resumable upload as the
+   * raw request body.
+   * 
+   * @param sessionId The id of the upload session.
+   * @param index     The zero-based index of the chunk.
+   * @param body      The content of the chunk.
+   * @return The method is returning a ResponseEntity with no content.
+   */
+  @PutMapping("/upload/sessions/{sessionId}/chunks/{index}")
+  public ResponseEntity<Object> uploadChunk(@PathVariable UUID sessionId, @PathVariable int index, InputStream body)
+      throws IOException {
+    uploadSessionService.writeChunk(sessionId, index, body);
+    return ResponseEntity.noContent().build();
+  }
+
+  /**
+   * The function `completeUploadSession` finishes a resumable upload once all
+   * chunks were received and returns the uploaded file's information.
+   * 
+   * @param sessionId The id of the upload session.
+   * @return The method is returning a ResponseEntity object.
+   */
+  @PostMapping("/upload/sessions/{sessionId}/complete")
+  public ResponseEntity<UploadFileResponse> completeUploadSession(@PathVariable UUID sessionId) throws IOException {
+    return ResponseEntity.ok(fileMetrics.operation("upload-session",
+        () -> uploadSessionService.completeSession(sessionId)));
+  }
+
+  /**
+   * The function `abortUploadSession` cancels a resumable upload, discarding
+   * the chunks received.
+   * 
+   * @param sessionId The id of the upload session.
+   * @return The method is returning a ResponseEntity with no content.
+   */
+  @DeleteMapping("/upload/sessions/{sessionId}")
+  public ResponseEntity<Object> abortUploadSession(@PathVariable UUID sessionId) throws IOException {
+    uploadSessionService.abortSession(sessionId);
+    return ResponseEntity.noContent().build();
+  }
+
   /**
    * The function `downloadFile` in a Java controller downloads a file by setting
    * the appropriate headers
-   * and returning the file data as a byte array in a ResponseEntity.
+   * and streaming the file content from storage to the response. Single
+   * `Range` requests are answered with `206 Partial Content`.
    * 
-   * @param fileName The `fileName` parameter is a string that represents the name
-   *                 of the file that needs
-   *                 to be downloaded.
-   * @return The method is returning a ResponseEntity<byte[]> object.
+   * @param fileName   The `fileName` parameter is a string that represents the
+   *                   name
+   *                   of the file that needs
+   *                   to be downloaded.
+   * @param webRequest The current request and response.
    */
   @GetMapping("/download/{fileName}")
-  public ResponseEntity<Object> downloadFile(@PathVariable String fileName) throws Exception {
-    try {
+  public void downloadFile(@PathVariable String fileName, ServletWebRequest webRequest) throws Exception {
+    fileMetrics.operation("download", () -> {
       DownloadFileResult result = fileService.downloadFile(fileName);
+      writeFile(result, "attachment; filename=\"" + result.getOriginalFileName() + "\"", webRequest);
+    });
+  }
+
+  /**
+   * The function `downloadArchive` downloads many files at once as a ZIP
+   * archive, which is streamed while it is built.
+   * 
+   * @param names    The unique names of the files, in the order they are
+   *                 archived. Names that do not match a file are left out.
+   * @param response The current response.
+   */
+  @PostMapping("/archive")
+  public void downloadArchive(@RequestBody List<String> names, HttpServletResponse response) throws Exception {
+    fileMetrics.operation("archive", () -> writeArchive(fileService.findDownloads(names), response));
+  }
 
-      InputStreamResource resource = new InputStreamResource(new ByteArrayInputStream(result.getFileData()));
-      MediaType mediaType = result.getMediaType();
+  /**
+   * The function `downloadSearchArchive` downloads the files matching a
+   * search, newest first, as a ZIP archive. It takes the same filters as the
+   * file listing.
+   * 
+   * @param search   The filters and the maximum number of files.
+   * @param response The current response.
+   */
+  @GetMapping("/archive")
+  public void downloadSearchArchive(FileSearchRequest search, HttpServletResponse response) throws Exception {
+    fileMetrics.operation("archive", () -> writeArchive(fileService.searchDownloads(search), response));
+  }
 
-      HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(mediaType);
-      headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + result.getOriginalFileName() + "\"");
+  private void writeArchive(List<DownloadFileResult> files, HttpServletResponse response) throws Exception {
+    response.setContentType("application/zip");
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"files.zip\"");
+    archiveService.writeArchive(files, response.getOutputStream());
+  }
 
-      return ResponseEntity.ok()
-          .headers(headers)
-          .body(resource);
-    } catch (FileException e) {
-      return ResponseEntity.unprocessableEntity()
-          .body(new ApiError(HttpStatus.UNPROCESSABLE_ENTITY, "Unprocessable Entity", e.getLocalizedMessage()));
-    }
+  /**
+   * The function `signUrl` mints a pre-signed URL to download a file, which
+   * can be handed to clients that should not call the API directly.
+   * 
+   * @param fileName  The unique name of the file.
+   * @param expiresIn How many seconds the URL stays valid.
+   * @return The method is returning a ResponseEntity with the URL and the time
+   *         it expires.
+   */
+  @PostMapping("/sign/{fileName}")
+  public ResponseEntity<SignedUrlResponse> signUrl(@PathVariable String fileName,
+      @RequestParam(required = false) Long expiresIn) throws Exception {
+    Duration expiry = expiresIn != null ? Duration.ofSeconds(expiresIn) : null;
+    return ResponseEntity.ok(fileMetrics.operation("sign", () -> signedUrlService.sign(fileName, expiry)));
   }
 
   /**
-   * The function `viewFile` retrieves a file from the file service, creates an
-   * input stream resource
-   * from the file data, sets the media type of the file, and returns a
-   * ResponseEntity with the file
-   * resource and headers.
+   * The function `downloadSignedFile` downloads a file through a pre-signed
+   * URL. The signature is verified in memory and the content is streamed from
+   * storage without looking up the file metadata. Responses can be cached
+   * until the URL expires.
    * 
-   * @param fileName The `fileName` parameter is a String that represents the name
-   *                 of the file that needs
-   *                 to be viewed.
-   * @return The method is returning a ResponseEntity<Object>.
+   * @param token      The token of the URL.
+   * @param webRequest The current request and response.
+   */
+  @GetMapping("/signed/{token}")
+  public void downloadSignedFile(@PathVariable String token, ServletWebRequest webRequest) throws Exception {
+    fileMetrics.operation("signed-download", () -> {
+      DownloadFileResult result = signedUrlService.verify(token);
+      writeFile(result, "attachment; filename=\"" + result.getOriginalFileName() + "\"", webRequest);
+    });
+  }
+
+  /**
+   * The function `viewFile` retrieves a file from the file service, sets the
+   * media type of the file, and streams the file content to the response so it
+   * can be displayed inline. Single `Range` requests are answered with
+   * `206 Partial Content`, which lets audio and video players seek. With
+   * `size`, a reduced preview of an image is served instead.
+   * 
+   * @param fileName   The `fileName` parameter is a String that represents the
+   *                   name
+   *                   of the file that needs
+   *                   to be viewed.
+   * @param size       The largest side, in pixels, of the preview, or null for
+   *                   the original file.
+   * @param webRequest The current request and response.
    */
   @GetMapping("/view/{fileName}")
-  public ResponseEntity<Object> viewFile(@PathVariable String fileName) throws Exception {
+  public void viewFile(@PathVariable String fileName, @RequestParam(required = false) Integer size,
+      ServletWebRequest webRequest) throws Exception {
+    fileMetrics.operation("view", () -> {
+      DownloadFileResult result = fileService.viewFile(fileName, size);
+      writeFile(result, null, webRequest);
+    });
+  }
+
+  /**
+   * The function `deleteFile` deletes a file. Its content is removed from
+   * storage once no other file with the same content references it.
+   * 
+   * @param fileName The `fileName` parameter is a String that represents the
+   *                 unique name of the file that needs to be deleted.
+   * @return The method is returning a ResponseEntity with no content.
+   */
+  @DeleteMapping("/delete/{fileName}")
+  public ResponseEntity<Object> deleteFile(@PathVariable String fileName) throws IOException {
+    fileMetrics.operation("delete", () -> fileService.deleteFile(fileName));
+    return ResponseEntity.noContent().build();
+  }
+
+  /**
+   * The function writes the headers and the requested range of a file to the
+   * response. Files never change after upload, so responses carry an `ETag`
+   * built from the checksum, `Last-Modified` with the upload time and an
+   * immutable `Cache-Control`, which ends when the URL expires for pre-signed
+   * URLs; `If-None-Match` and `If-Modified-Since` are
+   * answered with `304 Not Modified` and an `If-Match` that matches no `ETag`
+   * with `412 Precondition Failed`. Requests with more than one range are
+   * answered with the whole file, as allowed by RFC 9110. Compressed content is
+   * sent as stored, with `Content-Encoding`, to clients that accept its coding
+   * and decompressed for the others and for range requests. The headers are
+   * built from the file metadata only, so `HEAD` and conditional requests never
+   * read the content.
+   * 
+   * @param result             The file to be written.
+   * @param contentDisposition The value of the `Content-Disposition` header, or
+   *                           null to omit it.
+   * @param webRequest         The current request and response.
+   */
+  private void writeFile(DownloadFileResult result, String contentDisposition, ServletWebRequest webRequest)
+      throws Exception {
+    HttpServletResponse response = webRequest.getResponse();
+    FileMetadata metadata = result.getMetadata();
+
+    // O conteúdo comprimido vai como está para quem aceita a codificação, exceto em pedidos de Range
+    String encoding = metadata.getEncoding();
+    boolean sendEncoded = encoding != null && webRequest.getHeader(HttpHeaders.RANGE) == null
+        && acceptsEncoding(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING), encoding);
+    String etag = metadata.getChecksum() != null
+        ? "\"" + metadata.getChecksum() + (sendEncoded ? "-" + encoding : "") + "\""
+        : null;
+    long lastModified = metadata.getUploadedAt() != null ? metadata.getUploadedAt().toEpochMilli() : -1;
+
+    CacheControl cacheControl;
+    if (!result.isImmutable()) {
+      cacheControl = CacheControl.noCache();
+    } else if (result.getExpiresAt() != null) {
+      // A URL pode expirar entre a verificação e aqui, e um max-age negativo não é válido
+      Duration maxAge = Duration.between(Instant.now(), result.getExpiresAt());
+      cacheControl = maxAge.isNegative() || maxAge.isZero() ? CacheControl.noStore()
+          : CacheControl.maxAge(maxAge).cachePublic();
+    } else {
+      cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+    }
+    response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+    if (encoding != null) {
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+    // O Spring só confere o If-Match em métodos que alteram o recurso, mas ele vale para o GET também
+    if (!matchesIfMatch(webRequest.getHeaderValues(HttpHeaders.IF_MATCH), etag)) {
+      response.setStatus(HttpStatus.PRECONDITION_FAILED.value());
+      return;
+    }
+    if (webRequest.checkNotModified(etag, lastModified)) {
+      return;
+    }
+
+    long fileSize = result.getFileSize();
+    long position = 0;
+    long length = fileSize;
+
+    List<HttpRange> ranges;
     try {
-      DownloadFileResult result = fileService.viewFile(fileName);
+      ranges = HttpRange.parseRanges(webRequest.getHeader(HttpHeaders.RANGE));
+    } catch (IllegalArgumentException e) {
+      ranges = List.of();
+    }
+
+    // Com If-Range, o Range só vale se o cliente ainda tiver a mesma versão
+    String ifRange = webRequest.getHeader(HttpHeaders.IF_RANGE);
+    if (ifRange != null && !ifRange.equals(etag) && !ifRange.equals(response.getHeader(HttpHeaders.LAST_MODIFIED))) {
+      ranges = List.of();
+    }
 
-      InputStreamResource resource = new InputStreamResource(new ByteArrayInputStream(result.getFileData()));
-      MediaType mediaType = result.getMediaType();
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+    if (ranges.size() == 1) {
+      HttpRange range = ranges.get(0);
+      position = range.getRangeStart(fileSize);
+      if (position >= fileSize) {
+        response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+        return;
+      }
+      long end = range.getRangeEnd(fileSize);
+      length = end - position + 1;
+      response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + position + "-" + end + "/" + fileSize);
+    } else {
+      response.setStatus(HttpStatus.OK.value());
+    }
 
-      HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(mediaType);
+    response.setContentType(result.getMediaType().toString());
+    if (sendEncoded) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+      response.setContentLengthLong(metadata.getStoredLength());
+    } else {
+      response.setContentLengthLong(length);
+    }
+    if (contentDisposition != null) {
+      response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+    }
 
-      return ResponseEntity.ok()
-          .headers(headers)
-          .body(resource);
-    } catch (FileException e) {
-      return ResponseEntity.unprocessableEntity()
-          .body(new ApiError(HttpStatus.UNPROCESSABLE_ENTITY, "Unprocessable Entity", e.getLocalizedMessage()));
+    if (HttpMethod.HEAD.equals(webRequest.getHttpMethod())) {
+      return;
+    }
+    fileAccessTracker.recordRead(metadata.getId());
+    if (sendEncoded) {
+      fileService.writeEncodedContent(metadata, response.getOutputStream());
+    } else {
+      fileService.writeFileContent(metadata, position, length, response.getOutputStream());
+    }
+  }
+
+  /**
+   * The function checks an `If-Match` header against the `ETag` of the file,
+   * with the strong comparison required by RFC 9110.
+   * 
+   * @param ifMatch The values of the `If-Match` header, or null.
+   * @param etag    The `ETag` of the file, or null when it has none.
+   * @return The method is returning true if there is no `If-Match` header or
+   *         one of its entity tags matches.
+   */
+  private boolean matchesIfMatch(String[] ifMatch, String etag) {
+    if (ifMatch == null) {
+      return true;
+    }
+    for (String value : ifMatch) {
+      for (String tag : value.split(",")) {
+        tag = tag.trim();
+        if (tag.equals("*") || tag.equals(etag)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The function checks if an `Accept-Encoding` header accepts a content
+   * coding, either by name or through `*`, with a non-zero quality. The
+   * quality given to the coding by name takes precedence over the one of `*`,
+   * whatever their order, as in RFC 9110.
+   * 
+   * @param acceptEncoding The value of the `Accept-Encoding` header, or null.
+   * @param encoding       The content coding.
+   * @return The method is returning true if the coding is accepted.
+   */
+  private boolean acceptsEncoding(String acceptEncoding, String encoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    Double codingQuality = null;
+    Double anyQuality = null;
+    for (String element : acceptEncoding.split(",")) {
+      String[] parts = element.trim().split(";");
+      String coding = parts[0].trim();
+      if (coding.equalsIgnoreCase(encoding)) {
+        codingQuality = quality(parts);
+      } else if (coding.equals("*")) {
+        anyQuality = quality(parts);
+      }
+    }
+    double quality = codingQuality != null ? codingQuality : anyQuality != null ? anyQuality : 0;
+    return quality > 0;
+  }
+
+  private double quality(String[] parts) {
+    double quality = 1;
+    for (int i = 1; i < parts.length; i++) {
+      String parameter = parts[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          quality = Double.parseDouble(parameter.substring(2));
+        } catch (NumberFormatException e) {
+          quality = 0;
+        }
+      }
     }
+    return quality;
   }
 
 }
@@ -0,0 +1,13 @@
+package br.com.filesave.exception;
+
+import java.io.IOException;
+
+public class ChecksumMismatchException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ChecksumMismatchException(String message) {
+    super(message);
+  }
+
+}
@@ -0,0 +1,175 @@
+package br.com.filesave.filter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.filesave.exception.ApiError;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * The UploadAdmissionFilter class decides whether an upload is accepted
+ * before its body is read, so a burst of uploads is turned away in a few
+ * microseconds instead of filling the heap, the disk and the connection pool.
+ * Each client, identified by its address, may have at most
+ * {@code file.admission.max-per-client} uploads in progress, and all uploads
+ * together at most {@code file.admission.max-in-flight} bytes, counted from
+ * their {@code Content-Length}. An upload is always accepted when none is in
+ * progress, however large. Rejected uploads are answered with {@code 429} when
+ * the client is over its limit and {@code 503} when the service is, both with
+ * {@code Retry-After}. Behind a load balancer or reverse proxy the address is
+ * the proxy's unless {@code server.forward-headers-strategy} is set, so every
+ * client would share one limit; the forwarded address is not read here, since
+ * only the server knows which proxies to trust with it.
+ */
+@Component
+@ConditionalOnProperty(name = "file.admission.enabled", havingValue = "true")
+public class UploadAdmissionFilter extends OncePerRequestFilter implements MeterBinder {
+
+  private static final String UPLOAD_PATH = "/api/file/upload";
+
+  private final long maxInFlightBytes;
+
+  private final int maxPerClient;
+
+  private final String retryAfter;
+
+  private final ObjectMapper objectMapper;
+
+  private final AtomicLong inFlightBytes = new AtomicLong();
+
+  private final Map<String, Integer> uploadsPerClient = new ConcurrentHashMap<>();
+
+  private final LongAdder clientRejections = new LongAdder();
+
+  private final LongAdder capacityRejections = new LongAdder();
+
+  public UploadAdmissionFilter(@Value("${file.admission.max-in-flight}") DataSize maxInFlight,
+      @Value("${file.admission.max-per-client}") int maxPerClient,
+      @Value("${file.admission.retry-after}") Duration retryAfter,
+      ObjectMapper objectMapper) {
+    this.maxInFlightBytes = maxInFlight.toBytes();
+    this.maxPerClient = maxPerClient;
+    this.retryAfter = String.valueOf(Math.max(1, retryAfter.toSeconds()));
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    String method = request.getMethod();
+    return !("POST".equals(method) || "PUT".equals(method))
+        || !request.getRequestURI().startsWith(request.getContextPath() + UPLOAD_PATH);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    String client = request.getRemoteAddr();
+    if (!acquireClient(client)) {
+      clientRejections.increment();
+      reject(response, HttpStatus.TOO_MANY_REQUESTS,
+          "At most " + maxPerClient + " uploads can be in progress at once from the same client");
+      return;
+    }
+
+    // Uploads sem Content-Length (chunked) só contam no limite por cliente
+    long size = Math.max(request.getContentLengthLong(), 0);
+    if (!acquireBytes(size)) {
+      releaseClient(client);
+      capacityRejections.increment();
+      reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Too many uploads in progress, try again later");
+      return;
+    }
+
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      inFlightBytes.addAndGet(-size);
+      releaseClient(client);
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("filesave.upload.in-flight", inFlightBytes, AtomicLong::get)
+        .description("Bytes of the uploads admitted and still in progress")
+        .baseUnit("bytes")
+        .register(registry);
+    FunctionCounter.builder("filesave.upload.rejected", clientRejections, LongAdder::sum)
+        .description("Uploads rejected before their body was read")
+        .tag("reason", "client")
+        .register(registry);
+    FunctionCounter.builder("filesave.upload.rejected", capacityRejections, LongAdder::sum)
+        .description("Uploads rejected before their body was read")
+        .tag("reason", "capacity")
+        .register(registry);
+  }
+
+  /**
+   * The function counts one more upload in progress for a client, unless the
+   * client already has as many as allowed. The count is updated under the lock
+   * of the map bin holding the client, so clients rarely contend, and the
+   * entry is removed when it drops to zero.
+   * 
+   * @param client The address of the client.
+   * @return The method is returning true if the upload was admitted.
+   */
+  private boolean acquireClient(String client) {
+    boolean[] admitted = { false };
+    uploadsPerClient.compute(client, (key, count) -> {
+      int current = count != null ? count : 0;
+      if (current >= maxPerClient) {
+        return count;
+      }
+      admitted[0] = true;
+      return current + 1;
+    });
+    return admitted[0];
+  }
+
+  private void releaseClient(String client) {
+    uploadsPerClient.computeIfPresent(client, (key, count) -> count > 1 ? count - 1 : null);
+  }
+
+  private boolean acquireBytes(long size) {
+    long current;
+    do {
+      current = inFlightBytes.get();
+      if (current > 0 && current + size > maxInFlightBytes) {
+        return false;
+      }
+    } while (!inFlightBytes.compareAndSet(current, current + size));
+    return true;
+  }
+
+  private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+    response.setStatus(status.value());
+    response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+    // O corpo não lido é descartado; fechar a conexão evita recebê-lo por inteiro
+    response.setHeader(HttpHeaders.CONNECTION, "close");
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    objectMapper.writeValue(response.getOutputStream(), new ApiError(status, status.getReasonPhrase(), message));
+  }
+
+}
@@ -0,0 +1,241 @@
+package br.com.filesave.metrics;
+
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.Observation.CheckedCallable;
+import io.micrometer.observation.Observation.CheckedRunnable;
+import io.micrometer.observation.ObservationRegistry;
+
+/**
+ * The FileMetrics class records what the file operations cost with
+ * Micrometer. Operations and their phases are recorded as observations, which
+ * become timers and, when a tracing bridge is on the classpath, nested spans,
+ * so the time spent in the database can be told apart from the time spent
+ * moving content. Bytes transferred, the size of uploaded files and name
+ * collisions are recorded as counters and distribution summaries, as are the
+ * contents verified against their checksum, on read or by the scrubber, and
+ * those that did not match. Every meter is named under {@code filesave.file}
+ * and published through Actuator.
+ */
+@Component
+public class FileMetrics {
+
+  private static final String OPERATION = "filesave.file.operation";
+
+  private static final String PHASE = "filesave.file.phase";
+
+  private static final String TRANSFER = "filesave.file.transfer";
+
+  private final ObservationRegistry observationRegistry;
+
+  private final Counter bytesIn;
+
+  private final Counter bytesOut;
+
+  private final DistributionSummary uploadedSize;
+
+  private final Counter nameCollisions;
+
+  private final Counter deduplicated;
+
+  private final Counter storeRetries;
+
+  private final Map<String, Counter> verified;
+
+  private final Map<String, Counter> mismatched;
+
+  private final Counter scrubbedBytes;
+
+  public FileMetrics(MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+    this.observationRegistry = observationRegistry;
+    this.bytesIn = Counter.builder("filesave.file.bytes")
+        .description("Bytes of file content received and sent")
+        .baseUnit("bytes")
+        .tag("direction", "in")
+        .register(meterRegistry);
+    this.bytesOut = Counter.builder("filesave.file.bytes")
+        .description("Bytes of file content received and sent")
+        .baseUnit("bytes")
+        .tag("direction", "out")
+        .register(meterRegistry);
+    this.uploadedSize = DistributionSummary.builder("filesave.file.size")
+        .description("Size of the uploaded files")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    this.nameCollisions = Counter.builder("filesave.file.name.collisions")
+        .description("Uploads whose name was already taken and got a higher counter")
+        .register(meterRegistry);
+    this.deduplicated = Counter.builder("filesave.file.deduplicated")
+        .description("Uploads whose content was already stored")
+        .register(meterRegistry);
+    this.storeRetries = Counter.builder("filesave.file.store.retries")
+        .description("Content stores retried because the same content was stored concurrently")
+        .register(meterRegistry);
+    this.verified = Map.of("read", verifiedCounter(meterRegistry, "read"),
+        "scrub", verifiedCounter(meterRegistry, "scrub"));
+    this.mismatched = Map.of("read", mismatchedCounter(meterRegistry, "read"),
+        "scrub", mismatchedCounter(meterRegistry, "scrub"));
+    this.scrubbedBytes = Counter.builder("filesave.file.integrity.scrubbed")
+        .description("Bytes of stored content read by the scrubber")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+  }
+
+  private static Counter verifiedCounter(MeterRegistry meterRegistry, String source) {
+    return Counter.builder("filesave.file.integrity.verified")
+        .description("Contents whose checksum was verified")
+        .tag("source", source)
+        .register(meterRegistry);
+  }
+
+  private static Counter mismatchedCounter(MeterRegistry meterRegistry, String source) {
+    return Counter.builder("filesave.file.integrity.mismatches")
+        .description("Contents that did not match their checksum")
+        .tag("source", source)
+        .register(meterRegistry);
+  }
+
+  /**
+   * The function times a whole file operation, as seen by the client.
+   * 
+   * @param operation The name of the operation, such as upload or download.
+   * @param callable  The operation.
+   * @return The method is returning the result of the operation.
+   */
+  public <T, E extends Throwable> T operation(String operation, CheckedCallable<T, E> callable) throws E {
+    return Observation.createNotStarted(OPERATION, observationRegistry)
+        .contextualName("file " + operation)
+        .lowCardinalityKeyValue("operation", operation)
+        .observeChecked(callable);
+  }
+
+  /**
+   * The function times a whole file operation that returns nothing.
+   * 
+   * @param operation The name of the operation, such as upload or download.
+   * @param runnable  The operation.
+   */
+  public <E extends Throwable> void operation(String operation, CheckedRunnable<E> runnable) throws E {
+    Observation.createNotStarted(OPERATION, observationRegistry)
+        .contextualName("file " + operation)
+        .lowCardinalityKeyValue("operation", operation)
+        .observeChecked(runnable);
+  }
+
+  /**
+   * The function times a phase of an operation, such as computing the checksum
+   * or looking up the metadata in the database.
+   * 
+   * @param phase    The name of the phase.
+   * @param callable The phase.
+   * @return The method is returning the result of the phase.
+   */
+  public <T, E extends Throwable> T phase(String phase, CheckedCallable<T, E> callable) throws E {
+    return Observation.createNotStarted(PHASE, observationRegistry)
+        .contextualName("file " + phase)
+        .lowCardinalityKeyValue("phase", phase)
+        .observeChecked(callable);
+  }
+
+  /**
+   * The function times a phase of an operation that returns nothing.
+   * 
+   * @param phase    The name of the phase.
+   * @param runnable The phase.
+   */
+  public <E extends Throwable> void phase(String phase, CheckedRunnable<E> runnable) throws E {
+    Observation.createNotStarted(PHASE, observationRegistry)
+        .contextualName("file " + phase)
+        .lowCardinalityKeyValue("phase", phase)
+        .observeChecked(runnable);
+  }
+
+  /**
+   * The function times writing file content to a client and counts the bytes
+   * written.
+   * 
+   * @param source   Where the content is read from: cache or storage.
+   * @param length   The number of bytes written.
+   * @param runnable The transfer.
+   */
+  public <E extends Throwable> void transfer(String source, long length, CheckedRunnable<E> runnable) throws E {
+    Observation.createNotStarted(TRANSFER, observationRegistry)
+        .contextualName("file transfer")
+        .lowCardinalityKeyValue("source", source)
+        .observeChecked(runnable);
+    bytesOut.increment(length);
+  }
+
+  /**
+   * The function records a file received from a client.
+   * 
+   * @param size The size of the file in bytes.
+   */
+  public void uploaded(long size) {
+    bytesIn.increment(size);
+    uploadedSize.record(size);
+  }
+
+  /**
+   * The function records the counter allocated for a file name; any counter
+   * above the first means the name was already taken.
+   * 
+   * @param counter The counter allocated for the name.
+   */
+  public void nameAllocated(long counter) {
+    if (counter > 1) {
+      nameCollisions.increment();
+    }
+  }
+
+  /**
+   * The function records uploads whose content was already stored.
+   * 
+   * @param count The number of uploads.
+   */
+  public void deduplicated(long count) {
+    deduplicated.increment(count);
+  }
+
+  /**
+   * The function records a content store retried after a concurrent store of
+   * the same content.
+   */
+  public void storeRetried() {
+    storeRetries.increment();
+  }
+
+  /**
+   * The function records a content that matched its checksum.
+   * 
+   * @param source Where it was verified: read or scrub.
+   */
+  public void contentVerified(String source) {
+    verified.get(source).increment();
+  }
+
+  /**
+   * The function records a content that did not match its checksum.
+   * 
+   * @param source Where it was verified: read or scrub.
+   */
+  public void contentMismatched(String source) {
+    mismatched.get(source).increment();
+  }
+
+  /**
+   * The function records stored content read by the scrubber.
+   * 
+   * @param bytes The number of bytes read.
+   */
+  public void scrubbed(long bytes) {
+    scrubbedBytes.increment(bytes);
+  }
+
+}
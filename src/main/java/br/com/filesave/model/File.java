@@ -1,20 +1,37 @@
 package br.com.filesave.model;
 
-import java.sql.Blob;
+import java.time.Instant;
 import java.util.UUID;
 
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.Lob;
+import jakarta.persistence.Index;
+import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 import lombok.Data;
 
+/**
+ * The File class represents an uploaded file: its names, media type and size.
+ * The content is kept apart, in a {@link FileContent} shared by every file
+ * with the same content. The indexes serve the file listing, which pages
+ * through the files newest first, optionally filtered by type or size, and
+ * the tiering job, which looks up the files of each content. Reads are
+ * counted in batches, so the counters may lag the downloads by a few seconds.
+ */
 @Data
 @Entity
-@Table(name = "files")
+@Table(name = "files", indexes = {
+    @Index(name = "files_uploaded_at_idx", columnList = "uploaded_at, id"),
+    @Index(name = "files_type_uploaded_at_idx", columnList = "type, uploaded_at, id"),
+    @Index(name = "files_size_idx", columnList = "size"),
+    @Index(name = "files_content_id_idx", columnList = "content_id") })
 public class File {
 
   @Id
@@ -28,6 +45,16 @@ public class File {
 
   private String type;
 
-  @Lob
-  private Blob file;
+  private Long size;
+
+  @CreationTimestamp
+  private Instant uploadedAt;
+
+  private Instant lastReadAt;
+
+  @ColumnDefault("0")
+  private long readCount;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  private FileContent content;
 }
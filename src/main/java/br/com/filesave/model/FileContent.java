@@ -0,0 +1,86 @@
+package br.com.filesave.model;
+
+import java.sql.Blob;
+import java.time.Instant;
+import java.util.UUID;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * The FileContent class represents the stored content of one or more files.
+ * Content is addressed by its SHA-256 checksum, so identical uploads share a
+ * single FileContent, which is removed when the last file referencing it is
+ * deleted. Compressible content may be stored compressed; the checksum and
+ * the size always refer to the content as uploaded. Content no file has read
+ * for a while is moved out of the storage into a cold segment, and
+ * {@code segment} and {@code segmentOffset} then say where it is. The content
+ * is checked against its checksum in the background once every scrub period,
+ * and quarantined when it no longer matches.
+ */
+@Data
+@Entity
+@Table(name = "file_contents", indexes = {
+    @Index(name = "file_contents_checksum_idx", columnList = "checksum"),
+    @Index(name = "file_contents_verified_at_idx", columnList = "verified_at") })
+public class FileContent {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.UUID)
+  private UUID id;
+
+  /*
+   * Só é único entre os conteúdos fora de quarentena, com o índice parcial
+   * criado pela migração V5, ou pelo FileSearchIndexes sem o Flyway, que o
+   * Hibernate não consegue declarar.
+   */
+  private String checksum;
+
+  private Long size;
+
+  /**
+   * The codec the content is stored with, such as {@code deflate}, or null
+   * when it is stored as uploaded.
+   */
+  private String encoding;
+
+  /**
+   * The number of bytes kept in the storage, which is smaller than the size
+   * when the content is compressed.
+   */
+  private Long storedSize;
+
+  private long referenceCount;
+
+  private String storageKey;
+
+  @Lob
+  private Blob data;
+
+  /**
+   * The cold segment holding the content, or null while it is in the storage.
+   */
+  private Integer segment;
+
+  /**
+   * The offset of the content in its cold segment.
+   */
+  private Long segmentOffset;
+
+  /**
+   * The last time the stored content was found to match its checksum.
+   */
+  private Instant verifiedAt;
+
+  /**
+   * The time the stored content was found not to match its checksum, or null
+   * while it is not quarantined. Quarantined content is not served.
+   */
+  private Instant quarantinedAt;
+}
@@ -0,0 +1,46 @@
+package br.com.filesave.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * The FileDerivative class represents a reduced version of a stored content,
+ * such as an image thumbnail, whose largest side is at most {@code size}
+ * pixels. The derivative is itself stored as a {@link FileContent}; when the
+ * source is already small enough, the derivative points to the source content
+ * and holds no reference to it. Derivatives are removed with their source.
+ */
+@Data
+@Entity
+@Table(name = "file_derivatives", uniqueConstraints = @UniqueConstraint(columnNames = { "source_id", "size" }))
+public class FileDerivative {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.UUID)
+  private UUID id;
+
+  @ManyToOne(fetch = FetchType.LAZY, optional = false)
+  private FileContent source;
+
+  private int size;
+
+  private String type;
+
+  @ManyToOne(fetch = FetchType.LAZY, optional = false)
+  private FileContent content;
+
+  @CreationTimestamp
+  private Instant createdAt;
+}
@@ -0,0 +1,52 @@
+package br.com.filesave.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * The FileMetadata interface is a projection of the {@link File} entity and
+ * its {@link FileContent} with only the small index columns. Lookups that
+ * return it never read the content of the file, which is fetched separately by
+ * the storage when it is needed.
+ */
+public interface FileMetadata {
+
+  UUID getId();
+
+  String getUniqueName();
+
+  String getOriginalName();
+
+  String getType();
+
+  Long getSize();
+
+  Instant getUploadedAt();
+
+  UUID getContentId();
+
+  String getChecksum();
+
+  String getStorageKey();
+
+  String getEncoding();
+
+  Long getStoredSize();
+
+  Integer getSegment();
+
+  Long getSegmentOffset();
+
+  Instant getQuarantinedAt();
+
+  /**
+   * The function returns the number of bytes kept in the storage for the
+   * file, which is the size of the file unless its content is compressed.
+   * 
+   * @return The method is returning the stored length in bytes.
+   */
+  default Long getStoredLength() {
+    return getEncoding() != null ? getStoredSize() : getSize();
+  }
+
+}
@@ -0,0 +1,21 @@
+package br.com.filesave.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * The FileNameCounter class holds, for each slugified file name, the last
+ * counter used to build a unique name from it.
+ */
+@Data
+@Entity
+@Table(name = "file_name_counters")
+public class FileNameCounter {
+
+  @Id
+  private String name;
+
+  private long counter;
+}
@@ -0,0 +1,15 @@
+package br.com.filesave.model;
+
+/**
+ * The SegmentUsage interface is a projection with the contents a cold segment
+ * still holds, which tells how much of the segment is in use.
+ */
+public interface SegmentUsage {
+
+  Integer getSegment();
+
+  Long getContents();
+
+  Long getStoredBytes();
+
+}
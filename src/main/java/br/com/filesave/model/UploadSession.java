@@ -0,0 +1,56 @@
+package br.com.filesave.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * The UploadSession class represents a resumable upload in progress. The
+ * chunks received so far are staged on the local disk; the session only keeps
+ * what is needed to validate them and to create the file once complete.
+ */
+@Data
+@Entity
+@Table(name = "upload_sessions")
+public class UploadSession {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.UUID)
+  private UUID id;
+
+  private String originalName;
+
+  private String type;
+
+  private long size;
+
+  private long chunkSize;
+
+  @CreationTimestamp
+  private Instant createdAt;
+
+  private Instant expiresAt;
+
+  /**
+   * When a request started to complete the session, or null while chunks can
+   * still be sent.
+   */
+  private Instant completingAt;
+
+  /**
+   * The function returns the number of chunks needed to send the whole file.
+   * 
+   * @return The method is returning the number of chunks of the session.
+   */
+  public int getChunkCount() {
+    return (int) ((size + chunkSize - 1) / chunkSize);
+  }
+}
@@ -0,0 +1,118 @@
+package br.com.filesave.repositories;
+
+import java.sql.Blob;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import br.com.filesave.model.FileContent;
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.model.SegmentUsage;
+import jakarta.persistence.LockModeType;
+
+public interface FileContentRepository extends JpaRepository<FileContent, UUID> {
+
+  /*
+   * Conteúdo em quarentena não é reaproveitado: um novo upload dos mesmos
+   * bytes grava um conteúdo novo, que pode ser enviado.
+   */
+  Optional<FileContent> findFirstByChecksumAndQuarantinedAtIsNull(String checksum);
+
+  List<FileContent> findByChecksumInAndQuarantinedAtIsNull(Collection<String> checksums);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select c from FileContent c where c.id = :id")
+  Optional<FileContent> findByIdForUpdate(@Param("id") UUID id);
+
+  @Query("select c.data from FileContent c where c.id = :id")
+  Optional<Blob> findDataById(@Param("id") UUID id);
+
+  /*
+   * Um conteúdo está frio quando nenhum dos arquivos que o usam foi lido (ou
+   * enviado, se nunca foi lido) depois do limite. Conteúdos que só servem de
+   * miniatura ficam sempre no armazenamento.
+   */
+  @Query("""
+      select c.id as contentId, c.checksum as checksum, c.size as size, c.storageKey as storageKey,
+        c.encoding as encoding, c.storedSize as storedSize, c.segment as segment, c.segmentOffset as segmentOffset
+      from FileContent c
+      where c.segment is null and c.size is not null and c.referenceCount > 0
+        and exists (select f.id from File f where f.content = c)
+        and not exists (select f.id from File f where f.content = c
+          and coalesce(f.lastReadAt, f.uploadedAt) >= :readBefore)""")
+  List<FileMetadata> findColdContents(@Param("readBefore") Instant readBefore, Limit limit);
+
+  @Query("""
+      select c.id as contentId, c.checksum as checksum, c.size as size, c.storageKey as storageKey,
+        c.encoding as encoding, c.storedSize as storedSize, c.segment as segment, c.segmentOffset as segmentOffset
+      from FileContent c
+      where c.quarantinedAt is null and c.checksum is not null and c.size is not null
+        and (c.verifiedAt is null or c.verifiedAt < :verifiedBefore) and c.id > :afterId
+      order by c.id""")
+  List<FileMetadata> findContentsToVerify(@Param("verifiedBefore") Instant verifiedBefore,
+      @Param("afterId") UUID afterId, Limit limit);
+
+  @Query("""
+      select c.id as contentId, c.checksum as checksum, c.size as size, c.storageKey as storageKey,
+        c.encoding as encoding, c.storedSize as storedSize, c.segment as segment, c.segmentOffset as segmentOffset
+      from FileContent c
+      where c.id = :id""")
+  Optional<FileMetadata> findLocationById(@Param("id") UUID id);
+
+  @Query("""
+      select c.id as contentId, c.checksum as checksum, c.size as size, c.storageKey as storageKey,
+        c.encoding as encoding, c.storedSize as storedSize, c.segment as segment, c.segmentOffset as segmentOffset
+      from FileContent c
+      where c.segment = :segment
+      order by c.segmentOffset""")
+  List<FileMetadata> findSegmentContents(@Param("segment") Integer segment, Limit limit);
+
+  /*
+   * Os bytes de cada conteúdo no segmento, como em FileMetadata.getStoredLength(),
+   * sem os cabeçalhos, que o SegmentStore acrescenta.
+   */
+  @Query("""
+      select c.segment as segment, count(c) as contents,
+        sum(case when c.encoding is not null then c.storedSize else c.size end) as storedBytes
+      from FileContent c
+      where c.segment is not null
+      group by c.segment""")
+  List<SegmentUsage> findSegmentUsage();
+
+  @Query("select c.id from FileContent c where c.quarantinedAt is not null")
+  List<UUID> findQuarantinedIds();
+
+  @Transactional
+  @Modifying
+  @Query("update FileContent c set c.verifiedAt = :verifiedAt where c.id in :ids")
+  int markVerified(@Param("ids") Collection<UUID> ids, @Param("verifiedAt") Instant verifiedAt);
+
+  @Transactional
+  @Modifying
+  @Query("update FileContent c set c.quarantinedAt = :quarantinedAt where c.id = :id and c.quarantinedAt is null")
+  int quarantine(@Param("id") UUID id, @Param("quarantinedAt") Instant quarantinedAt);
+
+  @Transactional
+  @Modifying
+  @Query("update FileContent c set c.referenceCount = c.referenceCount + :count "
+      + "where c.id = :id and c.quarantinedAt is null")
+  int incrementReferences(@Param("id") UUID id, @Param("count") long count);
+
+  /*
+   * Apagar a linha não remove o large object do PostgreSQL, que precisa ser
+   * removido explicitamente.
+   */
+  @Query(value = "SELECT lo_unlink(data) FROM file_contents WHERE id = :id AND data IS NOT NULL", nativeQuery = true)
+  List<Integer> unlinkData(@Param("id") UUID id);
+
+}
@@ -0,0 +1,30 @@
+package br.com.filesave.repositories;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import br.com.filesave.model.FileDerivative;
+import br.com.filesave.model.FileMetadata;
+
+public interface FileDerivativeRepository extends JpaRepository<FileDerivative, UUID> {
+
+  boolean existsBySourceId(UUID sourceId);
+
+  @Query("select d from FileDerivative d join fetch d.content where d.source.id = :sourceId")
+  List<FileDerivative> findBySourceId(@Param("sourceId") UUID sourceId);
+
+  @Query("""
+      select f.id as id, f.uniqueName as uniqueName, f.originalName as originalName, d.type as type,
+        c.size as size, f.uploadedAt as uploadedAt, c.id as contentId, c.checksum as checksum,
+        c.storageKey as storageKey, c.encoding as encoding, c.storedSize as storedSize,
+        c.segment as segment, c.segmentOffset as segmentOffset, c.quarantinedAt as quarantinedAt
+      from File f, FileDerivative d join d.content c
+      where f.uniqueName = :uniqueName and d.source = f.content and d.size = :size""")
+  Optional<FileMetadata> findMetadataByUniqueNameAndSize(@Param("uniqueName") String uniqueName,
+      @Param("size") int size);
+}
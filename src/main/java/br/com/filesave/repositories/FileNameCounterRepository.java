@@ -0,0 +1,9 @@
+package br.com.filesave.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import br.com.filesave.model.FileNameCounter;
+
+public interface FileNameCounterRepository
+    extends JpaRepository<FileNameCounter, String>, FileNameCounterRepositoryCustom {
+}
@@ -0,0 +1,19 @@
+package br.com.filesave.repositories;
+
+import org.springframework.transaction.annotation.Transactional;
+
+public interface FileNameCounterRepositoryCustom {
+
+  /**
+   * The function increments the counter of a file name and returns its new
+   * value, creating the counter when the name is used for the first time.
+   * 
+   * @param name          The slugified file name, including the extension.
+   * @param legacyPattern A LIKE pattern matching the unique names generated
+   *                      for this name before the counter existed.
+   * @return The method is returning the next counter for the name.
+   */
+  @Transactional
+  long nextCounter(String name, String legacyPattern);
+
+}
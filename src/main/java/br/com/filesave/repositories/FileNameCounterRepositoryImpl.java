@@ -0,0 +1,72 @@
+package br.com.filesave.repositories;
+
+import java.sql.DatabaseMetaData;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+/**
+ * The FileNameCounterRepositoryImpl class increments the file name counters.
+ * On PostgreSQL each increment is a single statement: an UPDATE ... RETURNING,
+ * or an INSERT ... ON CONFLICT the first time a name is used. Other databases,
+ * such as the H2 used by the benchmarks, get a portable version that needs a
+ * few more round-trips.
+ */
+public class FileNameCounterRepositoryImpl implements FileNameCounterRepositoryCustom {
+
+  private static final String POSTGRESQL_INCREMENT = "UPDATE file_name_counters SET counter = counter + 1 "
+      + "WHERE name = ? RETURNING counter";
+
+  /*
+   * Nomes gerados antes da tabela de contadores seguem o padrão nome-N.ext com
+   * N sequencial, então o contador começa depois da quantidade de nomes
+   * existentes com o mesmo prefixo.
+   */
+  private static final String POSTGRESQL_CREATE = """
+      INSERT INTO file_name_counters (name, counter)
+      SELECT ?, count(*) + 1 FROM files WHERE unique_name LIKE ?
+      ON CONFLICT (name) DO UPDATE SET counter = file_name_counters.counter + 1
+      RETURNING counter""";
+
+  private static final String INCREMENT = "UPDATE file_name_counters SET counter = counter + 1 WHERE name = ?";
+
+  private static final String CREATE = "INSERT INTO file_name_counters (name, counter) "
+      + "SELECT ?, count(*) + 1 FROM files WHERE unique_name LIKE ?";
+
+  private static final String SELECT = "SELECT counter FROM file_name_counters WHERE name = ?";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final boolean postgresql;
+
+  public FileNameCounterRepositoryImpl(JdbcTemplate jdbcTemplate) throws MetaDataAccessException {
+    this.jdbcTemplate = jdbcTemplate;
+    DataSource dataSource = jdbcTemplate.getDataSource();
+    String databaseName = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+    this.postgresql = "PostgreSQL".equals(databaseName);
+  }
+
+  @Override
+  public long nextCounter(String name, String legacyPattern) {
+    if (postgresql) {
+      return jdbcTemplate.queryForList(POSTGRESQL_INCREMENT, Long.class, name).stream()
+          .findFirst()
+          .orElseGet(() -> jdbcTemplate.queryForObject(POSTGRESQL_CREATE, Long.class, name, legacyPattern));
+    }
+
+    if (jdbcTemplate.update(INCREMENT, name) == 0) {
+      try {
+        jdbcTemplate.update(CREATE, name, legacyPattern);
+      } catch (DuplicateKeyException e) {
+        // Outro upload criou o contador ao mesmo tempo
+        jdbcTemplate.update(INCREMENT, name);
+      }
+    }
+    return jdbcTemplate.queryForObject(SELECT, Long.class, name);
+  }
+
+}
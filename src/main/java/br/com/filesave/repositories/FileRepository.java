@@ -1,14 +1,37 @@
 package br.com.filesave.repositories;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import br.com.filesave.model.File;
+import br.com.filesave.model.FileMetadata;
 
-public interface FileRepository extends JpaRepository<File, UUID> {
+public interface FileRepository extends JpaRepository<File, UUID>, FileRepositoryCustom {
   Optional<File> findByUniqueName(String name);
 
+  @Query("""
+      select f.id as id, f.uniqueName as uniqueName, f.originalName as originalName, f.type as type,
+        f.size as size, f.uploadedAt as uploadedAt, c.id as contentId, c.checksum as checksum,
+        c.storageKey as storageKey, c.encoding as encoding, c.storedSize as storedSize,
+        c.segment as segment, c.segmentOffset as segmentOffset, c.quarantinedAt as quarantinedAt
+      from File f left join f.content c
+      where f.uniqueName = :uniqueName""")
+  Optional<FileMetadata> findMetadataByUniqueName(@Param("uniqueName") String uniqueName);
+
+  @Query("""
+      select f.id as id, f.uniqueName as uniqueName, f.originalName as originalName, f.type as type,
+        f.size as size, f.uploadedAt as uploadedAt, c.id as contentId, c.checksum as checksum,
+        c.storageKey as storageKey, c.encoding as encoding, c.storedSize as storedSize,
+        c.segment as segment, c.segmentOffset as segmentOffset, c.quarantinedAt as quarantinedAt
+      from File f left join f.content c
+      where f.uniqueName in :uniqueNames""")
+  List<FileMetadata> findMetadataByUniqueNameIn(@Param("uniqueNames") Collection<String> uniqueNames);
+
   boolean existsByUniqueName(String uniqueName);
 }
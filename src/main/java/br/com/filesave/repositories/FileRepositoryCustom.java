@@ -0,0 +1,44 @@
+package br.com.filesave.repositories;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import br.com.filesave.DTOs.FileSearchRequest;
+import br.com.filesave.model.FileMetadata;
+
+public interface FileRepositoryCustom {
+
+  /**
+   * The function lists the metadata of the files matching a search, newest
+   * first, starting after a given file. Files are ordered by upload time and
+   * id, so a page is read straight from an index however deep it is.
+   * 
+   * @param search          The filters of the search.
+   * @param afterUploadedAt The upload time of the last file of the previous
+   *                        page.
+   * @param afterId         The id of the last file of the previous page, or
+   *                        null for the first page.
+   * @param limit           The maximum number of files to return.
+   * @return The method is returning the metadata of the files found.
+   */
+  List<FileMetadata> search(FileSearchRequest search, Instant afterUploadedAt, UUID afterId, int limit);
+
+  /**
+   * The function adds reads to the read counters of files and moves their
+   * last read time forward, sending the updates to the database in batches.
+   * Files deleted in the meantime are skipped.
+   * 
+   * @param reads The reads of each file.
+   */
+  void recordReads(Collection<FileReads> reads);
+
+  /**
+   * The FileReads record is the number of reads of a file since its counters
+   * were last updated, and the time of the latest one.
+   */
+  record FileReads(UUID fileId, long count, Instant lastReadAt) {
+  }
+
+}
@@ -0,0 +1,130 @@
+package br.com.filesave.repositories;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import br.com.filesave.DTOs.FileSearchRequest;
+import br.com.filesave.model.FileMetadata;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * The FileRepositoryImpl class searches the file metadata. The query is built
+ * with only the filters given, so the database can pick the index that fits
+ * them, and selects only the small columns of {@code files} and
+ * {@code file_contents}, never the content. Files uploaded before the upload
+ * time was recorded have none and are listed first. It also updates the read
+ * counters of the files with plain JDBC batches, so thousands of downloads
+ * cost a handful of round-trips and never load the entities.
+ */
+public class FileRepositoryImpl implements FileRepositoryCustom {
+
+  private static final String RECORD_READS = "UPDATE files SET read_count = read_count + ?, "
+      + "last_read_at = GREATEST(COALESCE(last_read_at, ?), ?) WHERE id = ?";
+
+  private final EntityManager entityManager;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final int batchSize;
+
+  private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
+  public FileRepositoryImpl(EntityManager entityManager, JdbcTemplate jdbcTemplate,
+      @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+    this.entityManager = entityManager;
+    this.jdbcTemplate = jdbcTemplate;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public List<FileMetadata> search(FileSearchRequest search, Instant afterUploadedAt, UUID afterId, int limit) {
+    StringBuilder jpql = new StringBuilder("""
+        select f.id as id, f.uniqueName as uniqueName, f.originalName as originalName, f.type as type,
+          f.size as size, f.uploadedAt as uploadedAt, c.id as contentId, c.checksum as checksum,
+          c.storageKey as storageKey, c.encoding as encoding, c.storedSize as storedSize,
+          c.segment as segment, c.segmentOffset as segmentOffset, c.quarantinedAt as quarantinedAt
+        from File f left join f.content c
+        where 1 = 1""");
+    Map<String, Object> parameters = new HashMap<>();
+
+    if (search.getName() != null && !search.getName().isEmpty()) {
+      jpql.append(" and f.uniqueName like :name escape '\\'");
+      parameters.put("name", escapeLike(search.getName()) + "%");
+    }
+    if (search.getType() != null && !search.getType().isEmpty()) {
+      jpql.append(" and f.type = :type");
+      parameters.put("type", search.getType());
+    }
+    if (search.getMinSize() != null) {
+      jpql.append(" and f.size >= :minSize");
+      parameters.put("minSize", search.getMinSize());
+    }
+    if (search.getMaxSize() != null) {
+      jpql.append(" and f.size <= :maxSize");
+      parameters.put("maxSize", search.getMaxSize());
+    }
+    if (search.getUploadedFrom() != null) {
+      jpql.append(" and f.uploadedAt >= :uploadedFrom");
+      parameters.put("uploadedFrom", search.getUploadedFrom());
+    }
+    if (search.getUploadedTo() != null) {
+      jpql.append(" and f.uploadedAt < :uploadedTo");
+      parameters.put("uploadedTo", search.getUploadedTo());
+    }
+
+    // Continua depois do último arquivo da página anterior, na mesma ordem do índice
+    if (afterId != null && afterUploadedAt != null) {
+      jpql.append(" and (f.uploadedAt < :afterUploadedAt or (f.uploadedAt = :afterUploadedAt and f.id < :afterId))");
+      parameters.put("afterUploadedAt", afterUploadedAt);
+      parameters.put("afterId", afterId);
+    } else if (afterId != null) {
+      jpql.append(" and (f.uploadedAt is not null or f.id < :afterId)");
+      parameters.put("afterId", afterId);
+    }
+    jpql.append(" order by f.uploadedAt desc nulls first, f.id desc");
+
+    TypedQuery<Tuple> query = entityManager.createQuery(jpql.toString(), Tuple.class);
+    parameters.forEach(query::setParameter);
+    query.setMaxResults(limit);
+
+    List<FileMetadata> files = new ArrayList<>();
+    for (Tuple tuple : query.getResultList()) {
+      Map<String, Object> values = new HashMap<>();
+      for (TupleElement<?> element : tuple.getElements()) {
+        values.put(element.getAlias(), tuple.get(element));
+      }
+      files.add(projectionFactory.createProjection(FileMetadata.class, values));
+    }
+    return files;
+  }
+
+  @Override
+  public void recordReads(Collection<FileReads> reads) {
+    jdbcTemplate.batchUpdate(RECORD_READS, reads, batchSize, (statement, read) -> {
+      Timestamp lastReadAt = Timestamp.from(read.lastReadAt());
+      statement.setLong(1, read.count());
+      statement.setTimestamp(2, lastReadAt);
+      statement.setTimestamp(3, lastReadAt);
+      statement.setObject(4, read.fileId());
+    });
+  }
+
+  private String escapeLike(String value) {
+    return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+  }
+
+}
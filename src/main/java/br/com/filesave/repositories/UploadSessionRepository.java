@@ -0,0 +1,36 @@
+package br.com.filesave.repositories;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import br.com.filesave.model.UploadSession;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, UUID> {
+  List<UploadSession> findByExpiresAtBefore(Instant instant);
+
+  /*
+   * Uma sessão é lida logo depois de criada, então não pode ir para uma réplica
+   * de leitura, que ainda pode não tê-la.
+   */
+  @Override
+  @Transactional
+  Optional<UploadSession> findById(UUID id);
+
+  @Transactional
+  @Modifying
+  @Query("update UploadSession s set s.completingAt = :completingAt where s.id = :id and s.completingAt is null")
+  int claim(@Param("id") UUID id, @Param("completingAt") Instant completingAt);
+
+  @Transactional
+  @Modifying
+  @Query("update UploadSession s set s.completingAt = null where s.id = :id")
+  int release(@Param("id") UUID id);
+}
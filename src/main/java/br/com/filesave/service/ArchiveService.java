@@ -0,0 +1,182 @@
+package br.com.filesave.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import br.com.filesave.DTOs.DownloadFileResult;
+import br.com.filesave.model.FileMetadata;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The ArchiveService class writes many files as a single ZIP archive, built
+ * while it is sent. The next {@code file.archive.lookahead} files are fetched
+ * from the storage in parallel, into temporary files, while the current one is
+ * written, so the archive is produced as fast as the storage can deliver and
+ * memory use does not depend on the size of the archive. Files of media types
+ * that are already compressed, listed in {@code file.archive.stored-types},
+ * are stored as they are instead of being compressed again. Entries are named
+ * after the unique names of the files, which never collide.
+ */
+@Slf4j
+@Service
+public class ArchiveService {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileAccessTracker fileAccessTracker;
+
+    private final List<MediaType> storedTypes;
+
+    private final int lookahead;
+
+    private final int bufferSize;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    public ArchiveService(@Value("${file.archive.stored-types}") List<String> storedTypes,
+            @Value("${file.archive.lookahead}") int lookahead,
+            @Value("${file.archive.workers}") int workers,
+            @Value("${file.upload.buffer-size:64KB}") DataSize bufferSize) {
+        this.storedTypes = storedTypes.stream().map(MediaType::parseMediaType).toList();
+        this.lookahead = lookahead;
+        this.bufferSize = (int) bufferSize.toBytes();
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(workers);
+        this.executor.setMaxPoolSize(workers);
+        this.executor.setThreadNamePrefix("archive-");
+        this.executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * The function writes files as a ZIP archive, in the given order.
+     * 
+     * @param files The files to be archived.
+     * @param out   The stream the archive is written to.
+     */
+    public void writeArchive(List<DownloadFileResult> files, OutputStream out) throws Exception {
+        Deque<CompletableFuture<FetchedFile>> window = new ArrayDeque<>();
+        int next = 0;
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, bufferSize))) {
+            for (int i = 0; i < files.size(); i++) {
+                while (next < files.size() && window.size() < lookahead) {
+                    window.add(fetch(files.get(next++)));
+                }
+                FetchedFile fetched = await(window.poll());
+                try {
+                    writeEntry(zip, fetched);
+                } finally {
+                    Files.deleteIfExists(fetched.path());
+                }
+            }
+        } finally {
+            // Descarta os arquivos buscados para entradas que não chegaram a ser escritas
+            for (CompletableFuture<FetchedFile> pending : window) {
+                pending.thenAccept(fetched -> deleteQuietly(fetched.path()));
+            }
+        }
+    }
+
+    /**
+     * The function fetches the content of a file into a temporary file in the
+     * background, computing its CRC-32 on the way, as stored ZIP entries need
+     * it before their content is written.
+     * 
+     * @param file The file to be fetched.
+     * @return The method is returning the fetched file, once it is fetched.
+     */
+    private CompletableFuture<FetchedFile> fetch(DownloadFileResult file) {
+        return CompletableFuture.supplyAsync(() -> {
+            Path path = null;
+            try {
+                path = Files.createTempFile("filesave-", ".archive");
+                CRC32 crc = new CRC32();
+                try (OutputStream out = new CheckedOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(path), bufferSize), crc)) {
+                    fileService.writeFileContent(file.getMetadata(), 0, file.getFileSize(), out);
+                }
+                fileAccessTracker.recordRead(file.getMetadata().getId());
+                return new FetchedFile(file, path, crc.getValue());
+            } catch (Exception e) {
+                deleteQuietly(path);
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private FetchedFile await(CompletableFuture<FetchedFile> fetched) throws Exception {
+        try {
+            return fetched.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void writeEntry(ZipOutputStream zip, FetchedFile fetched) throws IOException {
+        FileMetadata metadata = fetched.file().getMetadata();
+        ZipEntry entry = new ZipEntry(metadata.getUniqueName());
+        if (metadata.getUploadedAt() != null) {
+            entry.setLastModifiedTime(FileTime.from(metadata.getUploadedAt()));
+        }
+        if (isStored(fetched.file().getMediaType())) {
+            long size = Files.size(fetched.path());
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(fetched.crc());
+        }
+        zip.putNextEntry(entry);
+        Files.copy(fetched.path(), zip);
+        zip.closeEntry();
+    }
+
+    private boolean isStored(MediaType mediaType) {
+        return storedTypes.stream().anyMatch(type -> type.includes(mediaType));
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private record FetchedFile(DownloadFileResult file, Path path, long crc) {
+    }
+
+}
@@ -0,0 +1,273 @@
+package br.com.filesave.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import br.com.filesave.exception.ChecksumMismatchException;
+import br.com.filesave.metrics.FileMetrics;
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.repositories.FileContentRepository;
+import br.com.filesave.storage.ContentCompression;
+import br.com.filesave.storage.FileStorage;
+import br.com.filesave.storage.SegmentStore;
+import br.com.filesave.utils.VerifyingOutputStream;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The ContentScrubber class reads back stored content in the background and
+ * compares it with the checksum recorded when it was uploaded, so corruption
+ * is found before a client downloads it. Every
+ * {@code file.integrity.scrub-interval} it checks the contents not verified
+ * for {@code file.integrity.scrub-period}, in batches of
+ * {@code file.integrity.scrub-batch-size} split between
+ * {@code file.integrity.scrub-parallelism} workers of a work-stealing pool, so
+ * a large content does not hold back the rest of the batch. All workers share
+ * a budget of {@code file.integrity.scrub-rate} bytes per second read from the
+ * storage, which keeps the scrub from competing with downloads. Mismatches are
+ * reported through the {@link IntegrityService} and are not marked as
+ * verified, so a corrupt content left out of quarantine is reported again on
+ * the next cycle.
+ */
+@Slf4j
+@Service
+public class ContentScrubber {
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private ContentCompression contentCompression;
+
+    @Autowired
+    private IntegrityService integrityService;
+
+    @Autowired
+    private FileMetrics fileMetrics;
+
+    private final boolean enabled;
+
+    private final Duration period;
+
+    private final int batchSize;
+
+    private final IoBudget budget;
+
+    private final ForkJoinPool pool;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ContentScrubber(@Value("${file.integrity.scrub-enabled}") boolean enabled,
+            @Value("${file.integrity.scrub-period}") Duration period,
+            @Value("${file.integrity.scrub-batch-size}") int batchSize,
+            @Value("${file.integrity.scrub-parallelism}") int parallelism,
+            @Value("${file.integrity.scrub-rate}") DataSize rate) {
+        this.enabled = enabled;
+        this.period = period;
+        this.batchSize = batchSize;
+        this.budget = new IoBudget(rate.toBytes());
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The function starts a scrub cycle on the pool of the scrubber, so the
+     * scheduler thread shared with the other jobs is not held for the whole
+     * cycle. A cycle still running when the next one is due is left to finish.
+     */
+    @Scheduled(fixedDelayString = "${file.integrity.scrub-interval}",
+            initialDelayString = "${file.integrity.scrub-interval}")
+    public void scheduleScrub() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        pool.execute(() -> {
+            try {
+                scrub();
+            } catch (Exception e) {
+                log.warn("Content scrub failed: {}", e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /**
+     * The function checks every content due for verification, one batch at a
+     * time in the order of their ids. Each batch starts after the last id of
+     * the previous one, so contents that could not be read or did not match are
+     * passed over until the next cycle instead of being read again in a loop.
+     */
+    private void scrub() {
+        Instant started = Instant.now();
+        Instant verifiedBefore = started.minus(period);
+        UUID afterId = new UUID(0, 0);
+        long checked = 0;
+        while (!pool.isShutdown()) {
+            List<FileMetadata> contents = fileContentRepository.findContentsToVerify(verifiedBefore, afterId,
+                    Limit.of(batchSize));
+            if (contents.isEmpty()) {
+                break;
+            }
+            afterId = contents.get(contents.size() - 1).getContentId();
+
+            List<ForkJoinTask<Outcome>> tasks = new ArrayList<>();
+            for (FileMetadata content : contents) {
+                tasks.add(ForkJoinTask.adapt(() -> check(content)));
+            }
+            ForkJoinTask.invokeAll(tasks);
+
+            List<UUID> ids = new ArrayList<>();
+            for (int i = 0; i < contents.size(); i++) {
+                Outcome outcome = tasks.get(i).join();
+                if (outcome == Outcome.VERIFIED) {
+                    ids.add(contents.get(i).getContentId());
+                }
+                if (outcome != Outcome.UNREADABLE) {
+                    checked++;
+                }
+            }
+            if (!ids.isEmpty()) {
+                fileContentRepository.markVerified(ids, Instant.now());
+            }
+        }
+        if (checked > 0) {
+            log.info("Scrubbed {} contents in {}", checked, Duration.between(started, Instant.now()));
+        }
+    }
+
+    /**
+     * The function reads a content back from where it is stored, decompressed
+     * when it is compressed, and compares it with its checksum.
+     *
+     * @param content The metadata of the content.
+     * @return The method is returning whether the content matched its
+     *         checksum, did not match it or could not be read.
+     */
+    private Outcome check(FileMetadata content) {
+        VerifyingOutputStream verifying = new VerifyingOutputStream(OutputStream.nullOutputStream(),
+                content.getSize(), content.getChecksum());
+        OutputStream decoded = content.getEncoding() != null
+                ? contentCompression.decode(content.getEncoding(), 0, content.getSize(), verifying)
+                : verifying;
+        BudgetOutputStream out = new BudgetOutputStream(decoded, budget);
+        try {
+            try (out) {
+                if (content.getSegment() != null) {
+                    segmentStore.transferTo(content.getSegment(), content.getSegmentOffset(), 0,
+                            content.getStoredLength(), out);
+                } else {
+                    fileStorage.transferTo(content, 0, content.getStoredLength(), out);
+                }
+            }
+            verifying.verify();
+            integrityService.verified(content, "scrub");
+            return Outcome.VERIFIED;
+        } catch (ChecksumMismatchException | ZipException e) {
+            integrityService.mismatched(content, "scrub");
+            return Outcome.MISMATCHED;
+        } catch (Exception e) {
+            log.warn("Could not scrub content {}: {}", content.getContentId(), e.getMessage());
+            return Outcome.UNREADABLE;
+        } finally {
+            fileMetrics.scrubbed(out.written);
+        }
+    }
+
+    private enum Outcome {
+        VERIFIED, MISMATCHED, UNREADABLE
+    }
+
+    /**
+     * The IoBudget class paces the reads of all the workers to a number of
+     * bytes per second. Each read reserves the time its bytes take at that rate
+     * and waits for its turn, so the budget holds however the reads are split
+     * between the workers.
+     */
+    private static class IoBudget {
+
+        private final long bytesPerSecond;
+
+        private long next = System.nanoTime();
+
+        IoBudget(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void acquire(int bytes) throws InterruptedIOException {
+            if (bytesPerSecond <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            long start;
+            synchronized (this) {
+                start = Math.max(next, now);
+                next = start + bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(start - now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the scrub I/O budget");
+            }
+        }
+
+    }
+
+    private static class BudgetOutputStream extends FilterOutputStream {
+
+        private final IoBudget budget;
+
+        private long written;
+
+        BudgetOutputStream(OutputStream out, IoBudget budget) {
+            super(out);
+            this.budget = budget;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            budget.acquire(1);
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            budget.acquire(len);
+            out.write(b, off, len);
+            written += len;
+        }
+
+    }
+
+}
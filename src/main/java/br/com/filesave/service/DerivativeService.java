@@ -0,0 +1,265 @@
+package br.com.filesave.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import br.com.filesave.metrics.FileMetrics;
+import br.com.filesave.model.FileContent;
+import br.com.filesave.model.FileDerivative;
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.repositories.FileContentRepository;
+import br.com.filesave.repositories.FileDerivativeRepository;
+import br.com.filesave.repositories.FileRepository;
+import br.com.filesave.storage.ContentCompression;
+import br.com.filesave.storage.FileStorage;
+import br.com.filesave.storage.SegmentStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The DerivativeService class generates reduced versions of uploaded images,
+ * one for each size in {@code file.derivatives.sizes}, so pages that only show
+ * previews do not download the full files. The work runs after the upload has
+ * been answered, on a fixed pool of workers fed by a bounded queue; uploads
+ * arriving while the queue is full are not processed and are served at full
+ * size. Derivatives are generated once per content, so identical uploads share
+ * them.
+ */
+@Slf4j
+@Service
+public class DerivativeService {
+
+    private static final String JPEG = "image/jpeg";
+
+    private static final String PNG = "image/png";
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private FileDerivativeRepository fileDerivativeRepository;
+
+    @Autowired
+    private FileContentService fileContentService;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private ContentCompression contentCompression;
+
+    @Autowired
+    private FileMetrics fileMetrics;
+
+    private final boolean enabled;
+
+    private final List<Integer> sizes;
+
+    private final long maxSourceSize;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    public DerivativeService(@Value("${file.derivatives.enabled}") boolean enabled,
+            @Value("${file.derivatives.sizes}") List<Integer> sizes,
+            @Value("${file.derivatives.max-source-size}") DataSize maxSourceSize,
+            @Value("${file.derivatives.workers}") int workers,
+            @Value("${file.derivatives.queue-capacity}") int queueCapacity) {
+        this.enabled = enabled;
+        this.sizes = sizes;
+        this.maxSourceSize = maxSourceSize.toBytes();
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(workers);
+        this.executor.setMaxPoolSize(workers);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("derivatives-");
+        this.executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * The function queues the generation of the derivatives of an uploaded
+     * image. It only enqueues the work, so the upload is not slowed down.
+     * 
+     * @param event The event of the uploaded file.
+     */
+    @EventListener
+    public void onFileUploaded(FileUploadedEvent event) {
+        if (!enabled || event.type() == null || !event.type().startsWith("image/")) {
+            return;
+        }
+        // Uploads simultâneos do mesmo conteúdo geram as miniaturas uma vez só
+        if (!pending.add(event.contentId())) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    fileMetrics.phase("derivatives", () -> generate(event));
+                } catch (Exception e) {
+                    log.warn("Could not generate the derivatives of {}: {}", event.uniqueName(), e.getMessage());
+                } finally {
+                    pending.remove(event.contentId());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            pending.remove(event.contentId());
+            log.warn("Derivative queue is full, {} will be served at full size", event.uniqueName());
+        }
+    }
+
+    /**
+     * The function generates the derivatives of a file. The image is decoded
+     * with subsampling when it is much larger than the largest derivative, so a
+     * large photo never needs to be fully decoded in memory.
+     * 
+     * @param event The event of the uploaded file.
+     */
+    private void generate(FileUploadedEvent event) throws IOException {
+        if (fileDerivativeRepository.existsBySourceId(event.contentId())) {
+            return;
+        }
+        FileMetadata file = fileRepository.findMetadataByUniqueName(event.uniqueName()).orElse(null);
+        if (file == null || file.getSize() == null || file.getSize() > maxSourceSize) {
+            return;
+        }
+
+        Path source = Files.createTempFile("filesave-", ".source");
+        try {
+            try (OutputStream fileOut = Files.newOutputStream(source);
+                    OutputStream out = file.getEncoding() != null
+                            ? contentCompression.decode(file.getEncoding(), 0, file.getSize(), fileOut)
+                            : fileOut) {
+                if (file.getSegment() != null) {
+                    segmentStore.transferTo(file.getSegment(), file.getSegmentOffset(), 0, file.getStoredLength(),
+                            out);
+                } else {
+                    fileStorage.transferTo(file, 0, file.getStoredLength(), out);
+                }
+            }
+
+            DecodedImage image = readImage(source);
+            if (image == null) {
+                return;
+            }
+            for (int size : sizes) {
+                if (Math.max(image.width(), image.height()) <= size) {
+                    FileContent original = fileContentRepository.getReferenceById(file.getContentId());
+                    saveDerivative(file, size, file.getType(), original);
+                } else {
+                    saveDerivative(file, size, image.image().getColorModel().hasAlpha() ? PNG : JPEG,
+                            storeScaled(image.image(), size));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    private DecodedImage readImage(Path path) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                // Lê só os pixels necessários para a maior miniatura, com folga para a escala
+                int largest = sizes.stream().mapToInt(Integer::intValue).max().orElse(width);
+                int subsampling = Math.max(1, Math.max(width, height) / (largest * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return new DecodedImage(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private FileContent storeScaled(BufferedImage image, int size) throws IOException {
+        double scale = (double) size / Math.max(image.getWidth(), image.getHeight());
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        boolean alpha = image.getColorModel().hasAlpha();
+
+        BufferedImage scaled = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        Path encoded = Files.createTempFile("filesave-", alpha ? ".png" : ".jpg");
+        try {
+            ImageIO.write(scaled, alpha ? "png" : "jpg", encoded.toFile());
+            return fileContentService.store(new FileSystemResource(encoded), Files.size(encoded),
+                    alpha ? PNG : JPEG);
+        } finally {
+            Files.deleteIfExists(encoded);
+        }
+    }
+
+    private void saveDerivative(FileMetadata file, int size, String type, FileContent content) throws IOException {
+        FileDerivative derivative = new FileDerivative();
+        derivative.setSource(fileContentRepository.getReferenceById(file.getContentId()));
+        derivative.setSize(size);
+        derivative.setType(type);
+        derivative.setContent(content);
+        try {
+            fileDerivativeRepository.save(derivative);
+        } catch (DataIntegrityViolationException e) {
+            // O arquivo foi apagado ou outro upload do mesmo conteúdo já gerou a miniatura
+            if (!content.getId().equals(file.getContentId())) {
+                fileContentService.release(content.getId());
+            }
+        }
+    }
+
+    private record DecodedImage(BufferedImage image, int width, int height) {
+    }
+
+}
@@ -0,0 +1,78 @@
+package br.com.filesave.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import br.com.filesave.repositories.FileRepository;
+import br.com.filesave.repositories.FileRepositoryCustom.FileReads;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The FileAccessTracker class counts the reads of each file. A read only
+ * updates an in-memory buffer, so serving a file never waits on the database;
+ * the buffer is written to the files every {@code file.access.flush-interval}
+ * in JDBC batches, and once more when the application stops. Reads buffered
+ * when the application dies are lost, which only delays a file being seen as
+ * hot.
+ */
+@Slf4j
+@Component
+public class FileAccessTracker {
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    private final ConcurrentHashMap<UUID, FileReads> pending = new ConcurrentHashMap<>();
+
+    /**
+     * The function records a read of a file.
+     *
+     * @param fileId The id of the file, or null for files that are not tracked.
+     */
+    public void recordRead(UUID fileId) {
+        if (fileId != null) {
+            pending.merge(fileId, new FileReads(fileId, 1, Instant.now()), FileAccessTracker::combine);
+        }
+    }
+
+    /**
+     * The function writes the buffered reads to the database. Reads that could
+     * not be written are put back in the buffer for the next flush.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${file.access.flush-interval}")
+    public void flush() {
+        List<FileReads> reads = new ArrayList<>();
+        for (UUID fileId : pending.keySet()) {
+            FileReads read = pending.remove(fileId);
+            if (read != null) {
+                reads.add(read);
+            }
+        }
+        if (reads.isEmpty()) {
+            return;
+        }
+
+        try {
+            fileRepository.recordReads(reads);
+        } catch (DataAccessException e) {
+            log.warn("Could not record the reads of {} files: {}", reads.size(), e.getMessage());
+            reads.forEach(read -> pending.merge(read.fileId(), read, FileAccessTracker::combine));
+        }
+    }
+
+    private static FileReads combine(FileReads a, FileReads b) {
+        Instant lastReadAt = a.lastReadAt().isAfter(b.lastReadAt()) ? a.lastReadAt() : b.lastReadAt();
+        return new FileReads(a.fileId(), a.count() + b.count(), lastReadAt);
+    }
+
+}
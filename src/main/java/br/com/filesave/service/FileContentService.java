@@ -0,0 +1,289 @@
+package br.com.filesave.service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import br.com.filesave.metrics.FileMetrics;
+import br.com.filesave.model.FileContent;
+import br.com.filesave.model.FileDerivative;
+import br.com.filesave.repositories.FileContentRepository;
+import br.com.filesave.repositories.FileDerivativeRepository;
+import br.com.filesave.storage.ContentCompression;
+import br.com.filesave.storage.ContentCompression.EncodedContent;
+import br.com.filesave.storage.FileStorage;
+import br.com.filesave.utils.ChecksumInputStream;
+
+/**
+ * The FileContentService class stores file content deduplicated by its SHA-256
+ * checksum. Uploading content that is already stored only increments the
+ * reference count of the existing {@link FileContent}; the content is removed
+ * from the storage when its last reference is released.
+ */
+@Service
+public class FileContentService {
+
+    private static final int MAX_STORE_ATTEMPTS = 3;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private FileDerivativeRepository fileDerivativeRepository;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    @Autowired
+    private ContentCompression contentCompression;
+
+    @Autowired
+    private FileMetrics fileMetrics;
+
+    @Value("${file.upload.buffer-size:64KB}")
+    private DataSize uploadBufferSize;
+
+    /**
+     * The function returns the stored content matching the given source, adding
+     * a reference to it, or stores the source as new content when no identical
+     * content exists. The multipart content is already spooled to a local file
+     * by the servlet container, so the checksum is computed in a first pass over
+     * it and duplicates never reach the storage. New content of a compressible
+     * media type is compressed before it is stored.
+     * 
+     * @param source      The source of the content, which must be readable more
+     *                    than once.
+     * @param size        The size of the content in bytes.
+     * @param contentType The media type of the file.
+     * @return The method is returning the content, with one reference added for
+     *         the caller.
+     */
+    public FileContent store(InputStreamSource source, long size, String contentType) throws IOException {
+        String checksum = computeChecksum(source);
+
+        EncodedContent encoded = null;
+        try {
+            for (int attempt = 1;; attempt++) {
+                Optional<FileContent> existing = fileContentRepository.findFirstByChecksumAndQuarantinedAtIsNull(checksum);
+                // Se o conteúdo foi apagado ou posto em quarentena entre a busca e o incremento, grava de novo
+                if (existing.isPresent()
+                        && fileContentRepository.incrementReferences(existing.get().getId(), 1) == 1) {
+                    fileMetrics.deduplicated(1);
+                    return existing.get();
+                }
+
+                if (encoded == null) {
+                    encoded = fileMetrics.phase("compress",
+                            () -> contentCompression.encode(source, size, contentType));
+                }
+                FileContent content = new FileContent();
+                content.setChecksum(checksum);
+                content.setSize(size);
+                content.setEncoding(encoded.encoding());
+                content.setStoredSize(encoded.size());
+                content.setReferenceCount(1);
+                try (InputStream data = new BufferedInputStream(encoded.source().getInputStream(),
+                        (int) uploadBufferSize.toBytes())) {
+                    return fileMetrics.phase("store", () -> {
+                        fileStorage.store(content, data, content.getStoredSize());
+                        return fileContentRepository.save(content);
+                    });
+                } catch (DataIntegrityViolationException e) {
+                    // Outro upload gravou o mesmo conteúdo ao mesmo tempo
+                    fileStorage.delete(content);
+                    if (attempt == MAX_STORE_ATTEMPTS) {
+                        throw e;
+                    }
+                    fileMetrics.storeRetried();
+                } catch (IOException | RuntimeException e) {
+                    fileStorage.delete(content);
+                    throw e;
+                }
+            }
+        } finally {
+            if (encoded != null) {
+                encoded.close();
+            }
+        }
+    }
+
+    /**
+     * The function stores the content of a batch of files, like
+     * {@link #store(InputStreamSource, long, String)} for each file, but looking up the
+     * existing content with a single query and saving the new content in one
+     * transaction, so the inserts are sent in JDBC batches.
+     * 
+     * @param files The files whose content is stored.
+     * @return The method is returning the content of each file, in the same
+     *         order, with one reference added for each file.
+     */
+    public List<FileContent> storeAll(List<MultipartFile> files) throws IOException {
+        List<String> checksums = new ArrayList<>();
+        for (MultipartFile file : files) {
+            checksums.add(computeChecksum(file));
+        }
+        Map<String, Long> references = checksums.stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        Map<String, FileContent> contents = new HashMap<>();
+        List<FileContent> existing = fileContentRepository.findByChecksumInAndQuarantinedAtIsNull(references.keySet());
+        for (FileContent content : existing) {
+            long count = references.get(content.getChecksum());
+            if (fileContentRepository.incrementReferences(content.getId(), count) == 1) {
+                contents.put(content.getChecksum(), content);
+                fileMetrics.deduplicated(count);
+            }
+        }
+
+        List<FileContent> created = new ArrayList<>();
+        List<InputStream> streams = new ArrayList<>();
+        List<EncodedContent> encodedContents = new ArrayList<>();
+        try {
+            fileMetrics.phase("store", () -> {
+                for (int i = 0; i < files.size(); i++) {
+                    String checksum = checksums.get(i);
+                    if (contents.containsKey(checksum)) {
+                        continue;
+                    }
+                    MultipartFile file = files.get(i);
+                    FileContent content = new FileContent();
+                    content.setChecksum(checksum);
+                    content.setSize(file.getSize());
+                    content.setReferenceCount(references.get(checksum));
+
+                    EncodedContent encoded = contentCompression.encode(file, file.getSize(), file.getContentType());
+                    encodedContents.add(encoded);
+                    content.setEncoding(encoded.encoding());
+                    content.setStoredSize(encoded.size());
+
+                    // O Blob do banco só lê o stream no flush, então ele fica aberto até o saveAll
+                    InputStream data = new BufferedInputStream(encoded.source().getInputStream(),
+                            (int) uploadBufferSize.toBytes());
+                    streams.add(data);
+                    fileStorage.store(content, data, encoded.size());
+                    created.add(content);
+                    contents.put(checksum, content);
+                }
+                fileContentRepository.saveAll(created);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Outro upload gravou parte do mesmo conteúdo ao mesmo tempo; grava um a um
+            Set<String> createdChecksums = deleteAll(created);
+            List<FileContent> result = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                String checksum = checksums.get(i);
+                result.add(createdChecksums.contains(checksum)
+                        ? store(files.get(i), files.get(i).getSize(), files.get(i).getContentType())
+                        : contents.get(checksum));
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            Set<String> createdChecksums = deleteAll(created);
+            for (FileContent content : contents.values()) {
+                if (!createdChecksums.contains(content.getChecksum())) {
+                    release(content.getId(), references.get(content.getChecksum()));
+                }
+            }
+            throw e;
+        } finally {
+            for (InputStream stream : streams) {
+                stream.close();
+            }
+            for (EncodedContent encoded : encodedContents) {
+                encoded.close();
+            }
+        }
+
+        return checksums.stream().map(contents::get).toList();
+    }
+
+    /**
+     * The function releases one reference to a stored content, removing it from
+     * the storage when no file references it anymore.
+     * 
+     * @param contentId The id of the content.
+     */
+    @Transactional
+    public void release(UUID contentId) throws IOException {
+        release(contentId, 1);
+    }
+
+    /**
+     * The function releases references to a stored content, removing it from
+     * the storage when no file references it anymore. The content row is locked
+     * while the count is updated, so a concurrent upload of the same content
+     * either sees the new count or stores the content again.
+     * 
+     * @param contentId The id of the content.
+     * @param count     The number of references released.
+     */
+    @Transactional
+    public void release(UUID contentId, long count) throws IOException {
+        FileContent content = fileContentRepository.findByIdForUpdate(contentId).orElse(null);
+        if (content == null) {
+            return;
+        }
+
+        content.setReferenceCount(content.getReferenceCount() - count);
+        if (content.getReferenceCount() <= 0) {
+            releaseDerivatives(content);
+            fileStorage.delete(content);
+            fileContentRepository.delete(content);
+        }
+    }
+
+    /**
+     * The function removes the derivatives of a content about to be deleted,
+     * releasing the reference each one holds to its own content.
+     * 
+     * @param source The content whose derivatives are removed.
+     */
+    private void releaseDerivatives(FileContent source) throws IOException {
+        List<FileDerivative> derivatives = fileDerivativeRepository.findBySourceId(source.getId());
+        fileDerivativeRepository.deleteAll(derivatives);
+        for (FileDerivative derivative : derivatives) {
+            if (!derivative.getContent().getId().equals(source.getId())) {
+                release(derivative.getContent().getId());
+            }
+        }
+    }
+
+    private Set<String> deleteAll(List<FileContent> contents) throws IOException {
+        Set<String> checksums = new HashSet<>();
+        for (FileContent content : contents) {
+            fileStorage.delete(content);
+            checksums.add(content.getChecksum());
+        }
+        return checksums;
+    }
+
+    private String computeChecksum(InputStreamSource source) throws IOException {
+        return fileMetrics.phase("checksum", () -> {
+            try (ChecksumInputStream in = new ChecksumInputStream(source.getInputStream())) {
+                in.transferTo(OutputStream.nullOutputStream());
+                return in.getChecksum();
+            }
+        });
+    }
+
+}
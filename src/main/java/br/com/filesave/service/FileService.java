@@ -1,26 +1,54 @@
 package br.com.filesave.service;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.Blob;
-import java.util.Arrays;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.zip.ZipException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.github.slugify.Slugify;
 
 import br.com.filesave.DTOs.DownloadFileResult;
+import br.com.filesave.DTOs.FileMetadataResponse;
+import br.com.filesave.DTOs.FilePageResponse;
+import br.com.filesave.DTOs.FileSearchRequest;
 import br.com.filesave.DTOs.UploadFileResponse;
+import br.com.filesave.cache.FileContentCache;
+import br.com.filesave.config.ReadReplicas;
+import br.com.filesave.exception.ChecksumMismatchException;
 import br.com.filesave.exception.FileException;
+import br.com.filesave.metrics.FileMetrics;
 import br.com.filesave.model.File;
+import br.com.filesave.model.FileContent;
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.repositories.FileContentRepository;
+import br.com.filesave.repositories.FileDerivativeRepository;
+import br.com.filesave.repositories.FileNameCounterRepository;
 import br.com.filesave.repositories.FileRepository;
+import br.com.filesave.storage.ContentCompression;
+import br.com.filesave.storage.FileStorage;
+import br.com.filesave.storage.SegmentStore;
 import br.com.filesave.utils.FileUtils;
-import jakarta.transaction.Transactional;
+import br.com.filesave.utils.VerifyingOutputStream;
 
 @Service
 public class FileService {
@@ -28,17 +56,72 @@ public class FileService {
     @Autowired
     private FileRepository fileRepository;
 
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private FileNameCounterRepository fileNameCounterRepository;
+
+    @Autowired
+    private FileDerivativeRepository fileDerivativeRepository;
+
+    @Autowired
+    private FileContentService fileContentService;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    @Autowired(required = false)
+    private FileContentCache fileContentCache;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private TieringService tieringService;
+
+    @Autowired
+    private ContentCompression contentCompression;
+
+    @Autowired
+    private IntegrityService integrityService;
+
+    @Autowired
+    private ViewPolicy viewPolicy;
+
+    @Autowired
+    private ReadReplicas readReplicas;
+
     @Autowired
     private Slugify slugify;
 
+    @Autowired
+    private FileMetrics fileMetrics;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Autowired
     @Value("${backend.base-url}")
     private String backendBaseUrl;
 
+    @Value("${file.batch.max-size}")
+    private int maxBatchSize;
+
+    @Value("${file.archive.max-files}")
+    private int maxArchiveFiles;
+
+    @Value("${file.derivatives.sizes}")
+    private List<Integer> derivativeSizes;
+
     /**
-     * This function uploads a file, saves it to the database, and returns a
-     * response with information
-     * about the uploaded file.
+     * This function uploads a file, saves it to the configured storage, and
+     * returns a response with information
+     * about the uploaded file. The content is streamed from the multipart
+     * request into the storage in fixed-size chunks, so memory used per upload
+     * is bounded by {@code file.upload.buffer-size} regardless of file size.
+     * Content identical to an existing file is not stored again; the new file
+     * references the existing content.
      * 
      * @param uploadedFile The uploaded file that needs to be saved and processed.
      *                     It is of type
@@ -48,132 +131,458 @@ public class FileService {
      * @return The method is returning an instance of the `UploadFileResponse`
      *         class.
      */
-    @Transactional
     public UploadFileResponse uploadFile(MultipartFile uploadedFile) throws IOException {
+        return saveFile(uploadedFile.getOriginalFilename(), uploadedFile.getContentType(), uploadedFile.getSize(),
+                uploadedFile);
+    }
+
+    /**
+     * This function saves a file whose content is available locally, either
+     * spooled from a multipart request or staged by an upload session, and
+     * returns a response with information about the saved file.
+     * 
+     * @param originalName The original name of the file.
+     * @param contentType  The media type of the file.
+     * @param size         The size of the file in bytes.
+     * @param source       The source of the content, which must be readable more
+     *                     than once.
+     * @return The method is returning an instance of the `UploadFileResponse`
+     *         class.
+     */
+    public UploadFileResponse saveFile(String originalName, String contentType, long size, InputStreamSource source)
+            throws IOException {
+        File file = newFile(originalName, contentType, size);
+        file.setContent(fileContentService.store(source, size, contentType));
+
+        try {
+            fileMetrics.phase("save", () -> fileRepository.save(file));
+        } catch (RuntimeException e) {
+            fileContentService.release(file.getContent().getId());
+            throw e;
+        }
+
+        fileMetrics.uploaded(size);
+        publishUploaded(file);
+        return toUploadFileResponse(file);
+    }
+
+    /**
+     * This function uploads many files at once. The existing content is looked
+     * up with a single query and the new files and contents are saved in one
+     * transaction each, so Hibernate sends the inserts in JDBC batches. Either
+     * every file is saved or none is.
+     * 
+     * @param uploadedFiles The uploaded files, received in a single multipart
+     *                      request.
+     * @return The method is returning an `UploadFileResponse` for each file, in
+     *         the same order.
+     */
+    public List<UploadFileResponse> uploadFiles(List<MultipartFile> uploadedFiles) throws IOException {
+        if (uploadedFiles.size() > maxBatchSize) {
+            throw new FileException("At most " + maxBatchSize + " files can be uploaded at once");
+        }
+
+        List<FileContent> contents = fileContentService.storeAll(uploadedFiles);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < uploadedFiles.size(); i++) {
+            MultipartFile uploadedFile = uploadedFiles.get(i);
+            File file = newFile(uploadedFile.getOriginalFilename(), uploadedFile.getContentType(),
+                    uploadedFile.getSize());
+            file.setContent(contents.get(i));
+            files.add(file);
+        }
+
+        try {
+            fileMetrics.phase("save", () -> fileRepository.saveAll(files));
+        } catch (RuntimeException e) {
+            for (FileContent content : contents) {
+                fileContentService.release(content.getId());
+            }
+            throw e;
+        }
+
+        for (File file : files) {
+            fileMetrics.uploaded(file.getSize());
+            publishUploaded(file);
+        }
+        return files.stream().map(this::toUploadFileResponse).toList();
+    }
+
+    /**
+     * The function looks up the metadata of many files with a single query.
+     * Names that do not match a file are left out of the result.
+     * 
+     * @param fileNames The unique names of the files.
+     * @return The method is returning the metadata of the files found.
+     */
+    @Transactional(readOnly = true)
+    public List<FileMetadataResponse> getFilesMetadata(List<String> fileNames) {
+        if (fileNames.size() > maxBatchSize) {
+            throw new FileException("At most " + maxBatchSize + " files can be looked up at once");
+        }
+
+        return findMetadata(fileNames).stream()
+                .map(this::toFileMetadataResponse)
+                .toList();
+    }
+
+    /**
+     * The function looks up many files to be downloaded together with a single
+     * query, in the order their names were given. Names that do not match a
+     * file are left out.
+     * 
+     * @param fileNames The unique names of the files, at most
+     *                  {@code file.archive.max-files}.
+     * @return The method is returning the files found.
+     */
+    @Transactional(readOnly = true)
+    public List<DownloadFileResult> findDownloads(List<String> fileNames) throws SQLException {
+        if (fileNames.size() > maxArchiveFiles) {
+            throw new FileException("At most " + maxArchiveFiles + " files can be downloaded at once");
+        }
+
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < fileNames.size(); i++) {
+            positions.putIfAbsent(fileNames.get(i), i);
+        }
+        List<FileMetadata> files = new ArrayList<>(findMetadata(fileNames));
+        files.sort(Comparator.comparingInt(file -> positions.get(file.getUniqueName())));
+        List<DownloadFileResult> results = new ArrayList<>();
+        for (FileMetadata file : files) {
+            results.add(toDownloadFileResult(file));
+        }
+        return results;
+    }
+
+    /**
+     * The function looks up the files matching a search to be downloaded
+     * together, newest first, up to {@code file.archive.max-files} files.
+     * 
+     * @param search The filters of the search; the cursor is ignored.
+     * @return The method is returning the files found.
+     */
+    @Transactional(readOnly = true)
+    public List<DownloadFileResult> searchDownloads(FileSearchRequest search) throws SQLException {
+        int limit = search.getLimit() != null ? Math.min(search.getLimit(), maxArchiveFiles) : maxArchiveFiles;
+        List<FileMetadata> files = fileMetrics.phase("metadata", () -> fileRepository.search(search, null, null, limit));
+        List<DownloadFileResult> results = new ArrayList<>();
+        for (FileMetadata file : files) {
+            results.add(toDownloadFileResult(file));
+        }
+        return results;
+    }
+
+    /**
+     * The function lists the files matching a search, newest first, one page at
+     * a time. Pages are chained with an opaque cursor holding the upload time
+     * and id of the last file returned, so reading a page costs the same however
+     * far into the listing it is, and files uploaded in the meantime never shift
+     * the pages.
+     * 
+     * @param search The filters of the search, the cursor of the page and the
+     *               number of files per page, which is at most
+     *               {@code file.batch.max-size}.
+     * @return The method is returning the page of files and the cursor of the
+     *         next page.
+     */
+    @Transactional(readOnly = true)
+    public FilePageResponse listFiles(FileSearchRequest search) {
+        int limit = search.getLimit() != null ? search.getLimit() : maxBatchSize;
+        if (limit < 1 || limit > maxBatchSize) {
+            throw new FileException("The limit must be between 1 and " + maxBatchSize);
+        }
+
+        Instant afterUploadedAt = null;
+        UUID afterId = null;
+        if (search.getCursor() != null && !search.getCursor().isEmpty()) {
+            try {
+                String[] cursor = new String(Base64.getUrlDecoder().decode(search.getCursor()),
+                        StandardCharsets.UTF_8).split("\\|", 2);
+                afterUploadedAt = cursor[0].isEmpty() ? null : Instant.parse(cursor[0]);
+                afterId = UUID.fromString(cursor[1]);
+            } catch (RuntimeException e) {
+                throw new FileException("Invalid cursor: " + search.getCursor());
+            }
+        }
+
+        // Busca um arquivo a mais para saber se existe uma próxima página
+        Instant uploadedAt = afterUploadedAt;
+        UUID id = afterId;
+        List<FileMetadata> files = fileMetrics.phase("metadata",
+                () -> fileRepository.search(search, uploadedAt, id, limit + 1));
+
+        String nextCursor = null;
+        if (files.size() > limit) {
+            files = files.subList(0, limit);
+            FileMetadata last = files.get(limit - 1);
+            String cursor = (last.getUploadedAt() != null ? last.getUploadedAt().toString() : "") + "|" + last.getId();
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+        }
+        return new FilePageResponse(files.stream().map(this::toFileMetadataResponse).toList(), nextCursor);
+    }
+
+    private FileMetadataResponse toFileMetadataResponse(FileMetadata file) {
+        return new FileMetadataResponse(file.getUniqueName(), file.getOriginalName(), file.getType(),
+                file.getSize() != null ? file.getSize() : 0,
+                file.getSize() != null ? FileUtils.formatFileSize(file.getSize()) : null,
+                file.getChecksum(), file.getUploadedAt(),
+                backendBaseUrl + "/api/file/download/" + file.getUniqueName(),
+                backendBaseUrl + "/api/file/view/" + file.getUniqueName());
+    }
+
+    private File newFile(String originalName, String contentType, long size) {
         File file = new File();
-        String originalName = uploadedFile.getOriginalFilename();
         file.setOriginalName(originalName);
         file.setUniqueName(generateUniqueName(originalName));
-        file.setType(uploadedFile.getContentType());
-
-        Blob fileBlob = FileUtils.createBlob(uploadedFile.getBytes());
-        file.setFile(fileBlob);
+        file.setType(contentType);
+        file.setSize(size);
+        return file;
+    }
 
-        fileRepository.save(file);
+    private void publishUploaded(File file) {
+        eventPublisher.publishEvent(new FileUploadedEvent(file.getUniqueName(), file.getContent().getId(),
+                file.getType()));
+    }
 
+    private UploadFileResponse toUploadFileResponse(File file) {
         String fileDownloadUrl = backendBaseUrl + "/api/file/download/" + file.getUniqueName();
         String fileViewUrl = backendBaseUrl + "/api/file/view/" + file.getUniqueName();
-        String formattedFileSize = FileUtils.formatFileSize(uploadedFile.getSize());
-        return new UploadFileResponse("File uploaded successfully", originalName, file.getUniqueName(),
+        String formattedFileSize = FileUtils.formatFileSize(file.getSize());
+        return new UploadFileResponse("File uploaded successfully", file.getOriginalName(), file.getUniqueName(),
                 formattedFileSize,
                 fileDownloadUrl, fileViewUrl);
     }
 
     /**
-     * The function downloads a file by retrieving it from the file repository and
-     * converting it to a byte
-     * array.
+     * The function looks up the metadata of a file to be downloaded in the file
+     * repository. The content is not read here; it is streamed later by
+     * {@link #writeFileContent(FileMetadata, long, long, OutputStream)}.
      * 
      * @param fileName The name of the file to be downloaded.
      * @return The method is returning a DownloadFileResult object.
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public DownloadFileResult downloadFile(String fileName) throws Exception {
-        File file = fileRepository.findByUniqueName(fileName)
+        FileMetadata file = findMetadata(fileName)
                 .orElseThrow(() -> new FileException("Could not find file name: " + fileName));
-        byte[] fileData = FileUtils.blobToByteArray(file.getFile());
-        MediaType mediaType = MediaType.parseMediaType(file.getType());
 
-        return new DownloadFileResult(file.getOriginalName(), fileData, mediaType);
+        return toDownloadFileResult(file);
     }
 
     /**
-     * The function `viewFile` retrieves a file from the file repository, checks if
-     * the file extension is
-     * allowed, converts the file data to byte array, and returns a
+     * The function `viewFile` retrieves the metadata of a file from the file
+     * repository, checks if
+     * the {@link ViewPolicy} allows it to be viewed, before any content is
+     * read, and returns a
      * `DownloadFileResult` object containing
-     * the file name, data, and media type.
+     * the file id, name, media type and size. When a size is given, the
+     * derivative of that size is returned instead; until it is generated, the
+     * original file is returned without long-lived caching.
      * 
      * @param fileName The `fileName` parameter is a string that represents the
      *                 unique name of the file
      *                 that needs to be viewed.
+     * @param size     The largest side, in pixels, of the derivative to view, or
+     *                 null to view the original file.
      * @return The method is returning a DownloadFileResult object.
      */
-    @Transactional
-    public DownloadFileResult viewFile(String fileName) throws Exception {
-        File file = fileRepository.findByUniqueName(fileName)
-                .orElseThrow(() -> new FileException("Could not find file name: " + fileName));
+    @Transactional(readOnly = true)
+    public DownloadFileResult viewFile(String fileName, Integer size) throws Exception {
+        if (size != null && !derivativeSizes.contains(size)) {
+            throw new FileException("Unsupported preview size: " + size + ". Available sizes: " + derivativeSizes);
+        }
 
-        String fileExtension = getFileExtension(file.getOriginalName());
-        List<String> allowedExtensions = Arrays.asList(
-                "jpg", "jpeg", "png", "gif", // Imagens
-                "txt", "md", // Documentos de texto
-                "pdf", // Documentos em formato PDF
-                "mp3", "wav", "ogg", // Arquivos de áudio
-                "mp4" // Arquivos de vídeo
-        );
+        Optional<FileMetadata> derivative = size != null
+                ? fileMetrics.phase("metadata",
+                        () -> fileDerivativeRepository.findMetadataByUniqueNameAndSize(fileName, size))
+                : Optional.empty();
+        FileMetadata file = derivative.isPresent()
+                ? derivative.get()
+                : findMetadata(fileName)
+                        .orElseThrow(() -> new FileException("Could not find file name: " + fileName));
 
-        if (!allowedExtensions.contains(fileExtension)) {
+        if (!viewPolicy.isViewable(file)) {
             String fileDownloadUrl = backendBaseUrl + "/api/file/download/" + file.getUniqueName();
             throw new FileException(
                     "Visualização de arquivo não permitida! Faça o Download do arquivo: " + fileDownloadUrl);
         }
 
-        byte[] fileData = FileUtils.blobToByteArray(file.getFile());
-        MediaType mediaType = MediaType.parseMediaType(file.getType());
+        DownloadFileResult result = toDownloadFileResult(file);
+        result.setImmutable(size == null || derivative.isPresent());
+        return result;
+    }
+
+    /**
+     * The function looks up the metadata of a file. When reads are served by a
+     * read replica and the file is not there, it is looked up again on the
+     * primary, as it may have just been uploaded.
+     * 
+     * @param fileName The unique name of the file.
+     * @return The method is returning the metadata of the file, if it exists.
+     */
+    private Optional<FileMetadata> findMetadata(String fileName) {
+        Optional<FileMetadata> file = fileMetrics.phase("metadata",
+                () -> fileRepository.findMetadataByUniqueName(fileName));
+        if (file.isEmpty() && readReplicas.isEnabled()) {
+            return readReplicas.fromPrimary(status -> fileRepository.findMetadataByUniqueName(fileName));
+        }
+        return file;
+    }
+
+    /**
+     * The function looks up the metadata of many files, looking them up again
+     * on the primary when some are missing from a read replica.
+     * 
+     * @param fileNames The unique names of the files.
+     * @return The method is returning the metadata of the files found.
+     */
+    private List<FileMetadata> findMetadata(List<String> fileNames) {
+        List<FileMetadata> files = fileMetrics.phase("metadata",
+                () -> fileRepository.findMetadataByUniqueNameIn(fileNames));
+        // Nomes repetidos na lista voltam uma vez só, então a comparação é com os nomes distintos
+        if (files.size() < fileNames.stream().distinct().count() && readReplicas.isEnabled()) {
+            return readReplicas.fromPrimary(status -> fileRepository.findMetadataByUniqueNameIn(fileNames));
+        }
+        return files;
+    }
 
-        return new DownloadFileResult(file.getOriginalName(), fileData, mediaType);
+    /**
+     * The function deletes a file, removing its content from the storage when no
+     * other file references it.
+     * 
+     * @param fileName The unique name of the file to be deleted.
+     */
+    @Transactional
+    public void deleteFile(String fileName) throws IOException {
+        File file = fileRepository.findByUniqueName(fileName)
+                .orElseThrow(() -> new FileException("Could not find file name: " + fileName));
+
+        fileRepository.delete(file);
+        if (file.getContent() != null) {
+            fileContentService.release(file.getContent().getId());
+        }
     }
 
     /**
-     * The getFileExtension function returns the file extension of a given file
-     * name.
+     * The function streams a range of a file's content from the configured
+     * storage to the given output stream, without loading the whole content in
+     * memory. Small files are served from the {@link FileContentCache} when it
+     * is enabled. The time spent is recorded apart from the metadata lookup, so
+     * the transfer can be told apart from the database time. Compressed content
+     * is decompressed on the fly. Cold content is read from its segment and
+     * then promoted back to the storage. When the whole content is written it
+     * can be verified against its checksum on the way, see
+     * {@link IntegrityService}.
      * 
-     * @param fileName The `fileName` parameter is a string that represents the name
-     *                 of a file, including
-     *                 its extension.
-     * @return The method is returning the file extension of the given fileName.
+     * @param file     The metadata of the file whose content is written.
+     * @param position The zero-based offset of the first byte to write.
+     * @param length   The number of bytes to write.
+     * @param out      The stream the content is written to.
      */
-    private String getFileExtension(String fileName) {
-        int dotIndex = fileName.lastIndexOf(".");
-        if (dotIndex != -1 && dotIndex < fileName.length() - 1) {
-            return fileName.substring(dotIndex + 1).toLowerCase();
+    public void writeFileContent(FileMetadata file, long position, long length, OutputStream out) throws Exception {
+        OutputStream target = integrityService.verifying(file, position, length, out);
+        try {
+            if (file.getEncoding() == null) {
+                transferStoredContent(file, position, length, length, target);
+            } else {
+                try (OutputStream decoded = contentCompression.decode(file.getEncoding(), position, length, target)) {
+                    transferStoredContent(file, 0, file.getStoredLength(), length, decoded);
+                }
+            }
+            if (target instanceof VerifyingOutputStream verifying) {
+                verifying.verify();
+                integrityService.verified(file, "read");
+            }
+        } catch (ChecksumMismatchException | ZipException e) {
+            // Conteúdo compactado corrompido falha ao descompactar antes de chegar ao checksum
+            if (target != out) {
+                integrityService.mismatched(file, "read");
+            }
+            throw e;
         }
-        return "";
+    }
+
+    /**
+     * The function writes a file's content exactly as it is kept in the
+     * storage, still compressed with {@link FileMetadata#getEncoding()}, for
+     * clients that accept that encoding.
+     * 
+     * @param file The metadata of the file whose content is written.
+     * @param out  The stream the content is written to.
+     */
+    public void writeEncodedContent(FileMetadata file, OutputStream out) throws Exception {
+        transferStoredContent(file, 0, file.getStoredLength(), file.getStoredLength(), out);
+    }
+
+    private void transferStoredContent(FileMetadata file, long position, long length, long sent, OutputStream out)
+            throws Exception {
+        if (file.getSegment() != null) {
+            fileMetrics.transfer("segment", sent, () -> segmentStore.transferTo(file.getSegment(),
+                    file.getSegmentOffset(), position, length, out));
+            tieringService.promote(file);
+            return;
+        }
+        if (fileContentCache != null && fileContentCache.accepts(file)) {
+            fileMetrics.transfer("cache", sent,
+                    () -> fileContentCache.transferTo(file, position, length, out, fileStorage));
+            return;
+        }
+        fileMetrics.transfer("storage", sent, () -> fileStorage.transferTo(file, position, length, out));
+    }
+
+    private DownloadFileResult toDownloadFileResult(FileMetadata file) throws SQLException {
+        if (file.getQuarantinedAt() != null) {
+            throw new FileException("The content of file " + file.getUniqueName()
+                    + " failed its integrity check and is quarantined");
+        }
+        MediaType mediaType = MediaType.parseMediaType(file.getType());
+        long fileSize = file.getSize() != null ? file.getSize() : getLegacyFileSize(file);
+
+        return new DownloadFileResult(file, mediaType, fileSize);
+    }
+
+    /**
+     * The function reads the size of a file uploaded before the size column
+     * existed from its Blob, which only exists in the database storage.
+     * 
+     * @param file The metadata of the file.
+     * @return The method is returning the size of the file in bytes.
+     */
+    private long getLegacyFileSize(FileMetadata file) throws SQLException {
+        Blob blob = file.getContentId() != null
+                ? fileContentRepository.findDataById(file.getContentId()).orElse(null)
+                : null;
+        return blob != null ? blob.length() : 0;
     }
 
     /**
      * The function generates a unique name for a file by slugifying the original
-     * name and appending a
-     * counter or a UUID if the maximum number of attempts is reached.
+     * name and appending a counter. The counter is taken from a per-name row in
+     * the `file_name_counters` table, incremented atomically in a single
+     * round-trip, so the cost does not grow with the number of files sharing the
+     * same name and concurrent uploads never get the same counter.
      * 
      * @param originalName The original name of the file that needs to be made
      *                     unique.
      * @return The method `generateUniqueName` returns a unique name for a file.
      */
     private String generateUniqueName(String originalName) {
-        String slugifiedName = slugify.slugify(originalName);
-        int maxAttempts = 100; // Limite máximo de tentativas
-        int counter = 1;
-
+        String baseName = originalName;
         String extension = "";
         int extensionIndex = originalName.lastIndexOf(".");
         if (extensionIndex != -1) {
             extension = originalName.substring(extensionIndex);
-            slugifiedName = slugifiedName.substring(0, extensionIndex);
+            baseName = originalName.substring(0, extensionIndex);
         }
+        String slugifiedName = slugify.slugify(baseName);
 
-        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
-            String uniqueName = slugifiedName + "-" + counter + extension;
-            if (!fileRepository.existsByUniqueName(uniqueName)) {
-                return uniqueName;
-            }
-            counter++;
-        }
+        String counterName = slugifiedName + extension;
+        String legacyPattern = slugifiedName + "-%" + extension;
+        long counter = fileMetrics.phase("name",
+                () -> fileNameCounterRepository.nextCounter(counterName, legacyPattern));
+        fileMetrics.nameAllocated(counter);
 
-        // Se o número máximo de tentativas for atingido, gerar um UUID
-        String uuid = UUID.randomUUID().toString();
-        return slugifiedName + "-" + uuid + extension;
+        return slugifiedName + "-" + counter + extension;
     }
 
 }
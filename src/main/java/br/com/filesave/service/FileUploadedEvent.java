@@ -0,0 +1,14 @@
+package br.com.filesave.service;
+
+import java.util.UUID;
+
+/**
+ * The FileUploadedEvent record is published once an uploaded file is saved,
+ * for work that can happen after the upload has been answered.
+ * 
+ * @param uniqueName The unique name of the file.
+ * @param contentId  The id of the file's content.
+ * @param type       The media type of the file.
+ */
+public record FileUploadedEvent(String uniqueName, UUID contentId, String type) {
+}
@@ -0,0 +1,126 @@
+package br.com.filesave.service;
+
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import br.com.filesave.metrics.FileMetrics;
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.repositories.FileContentRepository;
+import br.com.filesave.utils.VerifyingOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The IntegrityService class checks stored content against the SHA-256
+ * checksum recorded when it was uploaded. With
+ * {@code file.integrity.verify-on-read}, whole downloads are verified while
+ * they are written to the client. Mismatches found on read or by the
+ * {@link ContentScrubber} are logged, counted and, with
+ * {@code file.integrity.quarantine}, the content is quarantined so it is not
+ * served anymore. The ids of the quarantined contents are also kept in memory
+ * and reloaded every {@code file.integrity.quarantine-refresh}, so signed URLs,
+ * which are served without looking up the file, can be refused too.
+ */
+@Slf4j
+@Service
+public class IntegrityService {
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private FileMetrics fileMetrics;
+
+    private final boolean verifyOnRead;
+
+    private final boolean quarantine;
+
+    private volatile Set<UUID> quarantined = Set.of();
+
+    public IntegrityService(@Value("${file.integrity.verify-on-read}") boolean verifyOnRead,
+            @Value("${file.integrity.quarantine}") boolean quarantine) {
+        this.verifyOnRead = verifyOnRead;
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * The function reloads the ids of the quarantined contents, including the
+     * ones quarantined by other instances.
+     */
+    @Scheduled(fixedDelayString = "${file.integrity.quarantine-refresh}")
+    public void refreshQuarantined() {
+        quarantined = Set.copyOf(fileContentRepository.findQuarantinedIds());
+    }
+
+    /**
+     * The function checks whether a content is quarantined, as of the last
+     * reload or a mismatch found by this instance.
+     *
+     * @param contentId The id of the content.
+     * @return The method is returning true if the content is quarantined.
+     */
+    public boolean isQuarantined(UUID contentId) {
+        return contentId != null && quarantined.contains(contentId);
+    }
+
+    /**
+     * The function wraps the stream a file's content is written to so the
+     * content is verified on the way, when verification on read is enabled.
+     * Only the whole content can be verified, so ranges are written as they
+     * are.
+     *
+     * @param file     The metadata of the file.
+     * @param position The zero-based offset of the first byte written.
+     * @param length   The number of bytes written.
+     * @param out      The stream the content is written to.
+     * @return The method is returning the stream to write the content to.
+     */
+    public OutputStream verifying(FileMetadata file, long position, long length, OutputStream out) {
+        if (!verifyOnRead || file.getChecksum() == null || file.getSize() == null || position != 0
+                || length != file.getSize()) {
+            return out;
+        }
+        return new VerifyingOutputStream(out, length, file.getChecksum());
+    }
+
+    /**
+     * The function records a content that matched its checksum.
+     *
+     * @param file   The metadata of the content.
+     * @param source Where it was verified: read or scrub.
+     */
+    public void verified(FileMetadata file, String source) {
+        fileMetrics.contentVerified(source);
+    }
+
+    /**
+     * The function reports a content that does not match its checksum and
+     * quarantines it when configured to.
+     *
+     * @param file   The metadata of the content.
+     * @param source Where the mismatch was found: read or scrub.
+     */
+    public void mismatched(FileMetadata file, String source) {
+        fileMetrics.contentMismatched(source);
+        log.error("Content {} does not match its checksum {} (found on {})", file.getContentId(),
+                file.getChecksum(), source);
+        if (quarantine && fileContentRepository.quarantine(file.getContentId(), Instant.now()) == 1) {
+            log.error("Content {} was quarantined and will not be served", file.getContentId());
+            addQuarantined(file.getContentId());
+        }
+    }
+
+    private synchronized void addQuarantined(UUID contentId) {
+        Set<UUID> ids = new HashSet<>(quarantined);
+        ids.add(contentId);
+        quarantined = Set.copyOf(ids);
+    }
+
+}
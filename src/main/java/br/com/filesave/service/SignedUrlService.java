@@ -0,0 +1,223 @@
+package br.com.filesave.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.filesave.DTOs.DownloadFileResult;
+import br.com.filesave.DTOs.SignedUrlResponse;
+import br.com.filesave.exception.FileException;
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.repositories.FileContentRepository;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The SignedUrlService class mints and verifies pre-signed download URLs.
+ * The URL carries everything needed to serve the file — where its content is
+ * stored, its media type, length and checksum — and an expiry time, signed
+ * with HMAC-SHA256 under {@code file.signing.secret}. Downloads through it are
+ * verified in memory and streamed straight from the storage, without looking
+ * up the file metadata, so any instance sharing the secret can serve them.
+ * Only URLs to cold content look up where it is when they are used, since it
+ * may have been promoted or moved to another segment in the meantime.
+ * A URL keeps working until it expires, even if the file is renamed, and
+ * stops once the content is removed from the storage or, within
+ * {@code file.integrity.quarantine-refresh}, once it is quarantined. Minting
+ * a URL counts as a read, so with tiering the content stays where the URL
+ * points as long as {@code file.signing.max-expiry} is shorter than
+ * {@code file.tiering.cold-after}, which is checked at startup.
+ */
+@Slf4j
+@Service
+public class SignedUrlService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileAccessTracker fileAccessTracker;
+
+    @Autowired
+    private IntegrityService integrityService;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${backend.base-url}")
+    private String backendBaseUrl;
+
+    private final SecretKeySpec key;
+
+    private final Duration defaultExpiry;
+
+    private final Duration maxExpiry;
+
+    public SignedUrlService(@Value("${file.signing.secret}") String secret,
+            @Value("${file.signing.default-expiry}") Duration defaultExpiry,
+            @Value("${file.signing.max-expiry}") Duration maxExpiry,
+            @Value("${file.tiering.enabled}") boolean tieringEnabled,
+            @Value("${file.tiering.cold-after}") Duration coldAfter) {
+        // O token guarda onde o conteúdo está; ele não pode ir para o nível frio antes de a URL expirar
+        if (tieringEnabled && maxExpiry.compareTo(coldAfter) >= 0) {
+            throw new IllegalStateException("file.signing.max-expiry (" + maxExpiry
+                    + ") must be shorter than file.tiering.cold-after (" + coldAfter + ")");
+        }
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (secretBytes.length == 0) {
+            // Sem segredo configurado, as URLs só valem nesta instância e até ela reiniciar
+            secretBytes = new byte[32];
+            new SecureRandom().nextBytes(secretBytes);
+            log.warn("file.signing.secret is not set; signed URLs will only work on this instance until it restarts");
+        }
+        this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+        this.defaultExpiry = defaultExpiry;
+        this.maxExpiry = maxExpiry;
+    }
+
+    /**
+     * The function mints a pre-signed URL to download a file.
+     * 
+     * @param fileName  The unique name of the file.
+     * @param expiresIn How long the URL stays valid, or null for
+     *                  {@code file.signing.default-expiry}; at most
+     *                  {@code file.signing.max-expiry}.
+     * @return The method is returning the URL and the time it expires.
+     */
+    public SignedUrlResponse sign(String fileName, Duration expiresIn) throws Exception {
+        Duration expiry = expiresIn != null ? expiresIn : defaultExpiry;
+        if (expiry.isNegative() || expiry.isZero() || expiry.compareTo(maxExpiry) > 0) {
+            throw new FileException("The expiry must be positive and at most " + maxExpiry);
+        }
+
+        DownloadFileResult result = fileService.downloadFile(fileName);
+        FileMetadata metadata = result.getMetadata();
+        SignedFile file = new SignedFile();
+        file.setId(metadata.getId());
+        file.setUniqueName(metadata.getUniqueName());
+        file.setOriginalName(metadata.getOriginalName());
+        file.setType(result.getMediaType().toString());
+        file.setSize(result.getFileSize());
+        file.setUploadedAt(metadata.getUploadedAt());
+        file.setContentId(metadata.getContentId());
+        file.setChecksum(metadata.getChecksum());
+        file.setStorageKey(metadata.getStorageKey());
+        file.setEncoding(metadata.getEncoding());
+        file.setStoredSize(metadata.getStoredSize());
+        file.setSegment(metadata.getSegment());
+        file.setSegmentOffset(metadata.getSegmentOffset());
+        file.setExpiresAt(Instant.now().plus(expiry));
+
+        // Conta como leitura, para o conteúdo não ir para o nível frio enquanto a URL vale
+        fileAccessTracker.recordRead(metadata.getId());
+
+        String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(file));
+        String token = payload + "." + sign(payload);
+        return new SignedUrlResponse(backendBaseUrl + "/api/file/signed/" + token, file.getExpiresAt());
+    }
+
+    /**
+     * The function verifies a pre-signed URL and returns the file it gives
+     * access to, without querying the database unless its content was cold
+     * when the URL was minted. Quarantined contents are checked against the ids
+     * kept in memory by the {@link IntegrityService}.
+     * 
+     * @param token The token of the URL, made of the encoded file and its
+     *              signature.
+     * @return The method is returning the file to be downloaded.
+     */
+    public DownloadFileResult verify(String token) throws GeneralSecurityException, IOException {
+        int separator = token.lastIndexOf('.');
+        if (separator == -1) {
+            throw new FileException("Invalid signed URL");
+        }
+        String payload = token.substring(0, separator);
+        byte[] signature = token.substring(separator + 1).getBytes(StandardCharsets.US_ASCII);
+        // Comparação em tempo constante, para não revelar a assinatura correta
+        if (!MessageDigest.isEqual(signature, sign(payload).getBytes(StandardCharsets.US_ASCII))) {
+            throw new FileException("Invalid signed URL");
+        }
+
+        SignedFile file = objectMapper.readValue(Base64.getUrlDecoder().decode(payload), SignedFile.class);
+        if (!Instant.now().isBefore(file.getExpiresAt())) {
+            throw new FileException("The signed URL expired at " + file.getExpiresAt());
+        }
+        if (integrityService.isQuarantined(file.getContentId())) {
+            throw new FileException("The content of file " + file.getUniqueName()
+                    + " failed its integrity check and is quarantined");
+        }
+        if (file.getSegment() != null) {
+            FileMetadata location = fileContentRepository.findLocationById(file.getContentId())
+                    .orElseThrow(() -> new FileException("Could not find file name: " + file.getUniqueName()));
+            file.setStorageKey(location.getStorageKey());
+            file.setEncoding(location.getEncoding());
+            file.setStoredSize(location.getStoredSize());
+            file.setSegment(location.getSegment());
+            file.setSegmentOffset(location.getSegmentOffset());
+        }
+
+        DownloadFileResult result = new DownloadFileResult(file, MediaType.parseMediaType(file.getType()),
+                file.getSize());
+        result.setExpiresAt(file.getExpiresAt());
+        return result;
+    }
+
+    private String sign(String payload) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(key);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * The SignedFile class is the file metadata carried inside a pre-signed
+     * URL.
+     */
+    @Data
+    @JsonIgnoreProperties({ "storedLength", "quarantinedAt" })
+    static class SignedFile implements FileMetadata {
+        private UUID id;
+        private String uniqueName;
+        private String originalName;
+        private String type;
+        private Long size;
+        private Instant uploadedAt;
+        private UUID contentId;
+        private String checksum;
+        private String storageKey;
+        private String encoding;
+        private Long storedSize;
+        private Integer segment;
+        private Long segmentOffset;
+        private Instant expiresAt;
+
+        // A quarentena é conferida no IntegrityService, não no token
+        @Override
+        public Instant getQuarantinedAt() {
+            return null;
+        }
+    }
+
+}
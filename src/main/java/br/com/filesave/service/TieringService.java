@@ -0,0 +1,392 @@
+package br.com.filesave.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.filesave.cache.FileContentCache;
+import br.com.filesave.metrics.FileMetrics;
+import br.com.filesave.model.FileContent;
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.model.SegmentUsage;
+import br.com.filesave.repositories.FileContentRepository;
+import br.com.filesave.storage.ContentCompression;
+import br.com.filesave.storage.ContentCompression.EncodedContent;
+import br.com.filesave.storage.FileStorage;
+import br.com.filesave.storage.SegmentStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The TieringService class keeps the storage small by moving the content no
+ * file has read for {@code file.tiering.cold-after} into the segments of the
+ * {@link SegmentStore}, compressed when that makes it smaller, and removing it
+ * from the storage. A cold content is promoted back to the storage the first
+ * time it is read, after that read has been served from its segment. The job
+ * runs every {@code file.tiering.interval} and moves at most
+ * {@code file.tiering.batch-size} contents per run; it must be enabled on a
+ * single instance, since the segments are only appended by one writer. Each
+ * run also reclaims the space of the content promoted or deleted: the content
+ * still in use in a sealed segment that is mostly unused, below
+ * {@code file.tiering.compaction-threshold}, is copied to the newest segment,
+ * and a segment found holding nothing is deleted on the next run, so reads
+ * that looked up a location in it have a whole interval to finish.
+ */
+@Slf4j
+@Service
+public class TieringService {
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private ContentCompression contentCompression;
+
+    @Autowired(required = false)
+    private FileContentCache fileContentCache;
+
+    @Autowired
+    private FileAccessTracker fileAccessTracker;
+
+    @Autowired
+    private FileMetrics fileMetrics;
+
+    private final boolean enabled;
+
+    private final Duration coldAfter;
+
+    private final int batchSize;
+
+    private final double compactionThreshold;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    private Set<Integer> emptySegments = Set.of();
+
+    public TieringService(@Value("${file.tiering.enabled}") boolean enabled,
+            @Value("${file.tiering.cold-after}") Duration coldAfter,
+            @Value("${file.tiering.batch-size}") int batchSize,
+            @Value("${file.tiering.promotion-queue-capacity}") int promotionQueueCapacity,
+            @Value("${file.tiering.compaction-threshold}") double compactionThreshold,
+            PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.coldAfter = coldAfter;
+        this.batchSize = batchSize;
+        this.compactionThreshold = compactionThreshold;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(1);
+        this.executor.setMaxPoolSize(1);
+        this.executor.setQueueCapacity(promotionQueueCapacity);
+        this.executor.setThreadNamePrefix("promotion-");
+        this.executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * The function moves a batch of cold content into the segments and then
+     * reclaims the space of the sealed segments. The buffered reads are written
+     * first, so content read since the last flush is not taken for cold.
+     */
+    @Scheduled(fixedDelayString = "${file.tiering.interval}", initialDelayString = "${file.tiering.interval}")
+    public void moveColdContent() {
+        if (!enabled) {
+            return;
+        }
+        fileAccessTracker.flush();
+
+        List<FileMetadata> contents = fileContentRepository
+                .findColdContents(Instant.now().minus(coldAfter), Limit.of(batchSize));
+        int moved = 0;
+        for (FileMetadata content : contents) {
+            try {
+                if (fileMetrics.phase("tiering", () -> moveToSegment(content))) {
+                    moved++;
+                }
+            } catch (Exception e) {
+                log.warn("Could not move content {} to the cold tier: {}", content.getContentId(), e.getMessage());
+            }
+        }
+        if (!contents.isEmpty()) {
+            log.info("Moved {} of {} cold contents to the cold tier", moved, contents.size());
+        }
+
+        try {
+            reclaimSegments();
+        } catch (IOException e) {
+            log.warn("Could not reclaim the cold segments: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The function queues the promotion of a cold content back to the storage.
+     * It only enqueues the work, so the read that found the content cold is not
+     * slowed down; reads arriving while the queue is full are served from the
+     * segment and promote the content later.
+     *
+     * @param file The metadata of the file that was read.
+     */
+    public void promote(FileMetadata file) {
+        if (file.getSegment() == null || !pending.add(file.getContentId())) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    fileMetrics.phase("promotion", () -> promoteToStorage(file));
+                } catch (Exception e) {
+                    log.warn("Could not promote content {}: {}", file.getContentId(), e.getMessage());
+                } finally {
+                    pending.remove(file.getContentId());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            pending.remove(file.getContentId());
+        }
+    }
+
+    /**
+     * The function moves a content from the storage to a segment. The content
+     * is appended to the segment before the database is updated, and removed
+     * from the storage in the same transaction, so a failure at any point
+     * leaves it readable where it was. When the content changed in the
+     * meantime, the bytes appended are discarded.
+     *
+     * @param content The metadata of the content.
+     * @return The method is returning true if the content was moved, or false
+     *         if it changed or was deleted in the meantime.
+     */
+    private boolean moveToSegment(FileMetadata content) throws IOException {
+        Path stored = Files.createTempFile("filesave-", ".cold");
+        try {
+            try (OutputStream out = Files.newOutputStream(stored)) {
+                fileStorage.transferTo(content, 0, content.getStoredLength(), out);
+            }
+
+            EncodedContent encoded = content.getEncoding() != null
+                    ? new EncodedContent(new FileSystemResource(stored), content.getStoredSize(),
+                            content.getEncoding(), null)
+                    : contentCompression.compress(new FileSystemResource(stored), content.getSize());
+            try (encoded) {
+                Path source = encoded.file() != null ? encoded.file() : stored;
+                SegmentStore.Location location = segmentStore.append(content.getContentId(), source);
+                boolean moved = false;
+                try {
+                    moved = inTransaction(() -> {
+                        FileContent current = fileContentRepository.findByIdForUpdate(content.getContentId())
+                                .orElse(null);
+                        if (current == null || current.getReferenceCount() <= 0 || current.getSegment() != null
+                                || !Objects.equals(current.getEncoding(), content.getEncoding())) {
+                            return false;
+                        }
+                        fileStorage.delete(current);
+                        current.setStorageKey(null);
+                        current.setData(null);
+                        current.setSegment(location.segment());
+                        current.setSegmentOffset(location.offset());
+                        current.setEncoding(encoded.encoding());
+                        current.setStoredSize(encoded.size());
+                        return true;
+                    });
+                } finally {
+                    if (!moved) {
+                        // Nenhum registro aponta para os bytes acrescentados; sem isso, só a compactação os recuperaria
+                        segmentStore.discard(location, Files.size(source));
+                    }
+                }
+                if (moved && fileContentCache != null) {
+                    fileContentCache.invalidate(content.getContentId());
+                }
+                return moved;
+            }
+        } finally {
+            Files.deleteIfExists(stored);
+        }
+    }
+
+    /**
+     * The function deletes the sealed segments found holding nothing on the
+     * previous run as well, and compacts those mostly unused, copying up to
+     * {@code file.tiering.batch-size} contents out of them.
+     */
+    private void reclaimSegments() throws IOException {
+        Map<Integer, Long> sealed = segmentStore.sealedSegments();
+        Map<Integer, SegmentUsage> usage = new HashMap<>();
+        for (SegmentUsage segment : fileContentRepository.findSegmentUsage()) {
+            usage.put(segment.getSegment(), segment);
+        }
+
+        Set<Integer> empty = new HashSet<>();
+        int budget = batchSize;
+        long reclaimed = 0;
+        for (Map.Entry<Integer, Long> entry : sealed.entrySet()) {
+            int segment = entry.getKey();
+            SegmentUsage used = usage.get(segment);
+            if (used == null) {
+                if (emptySegments.contains(segment)) {
+                    segmentStore.delete(segment);
+                    reclaimed += entry.getValue();
+                } else {
+                    empty.add(segment);
+                }
+                continue;
+            }
+            long usedBytes = used.getStoredBytes() + used.getContents() * SegmentStore.HEADER_SIZE;
+            if (budget > 0 && usedBytes < compactionThreshold * entry.getValue()) {
+                budget -= compact(segment, budget);
+            }
+        }
+        emptySegments = empty;
+        if (reclaimed > 0) {
+            log.info("Reclaimed {} bytes of cold segments", reclaimed);
+        }
+    }
+
+    private int compact(int segment, int limit) {
+        List<FileMetadata> contents = fileContentRepository.findSegmentContents(segment, Limit.of(limit));
+        for (FileMetadata content : contents) {
+            try {
+                fileMetrics.phase("compaction", () -> copyToNewestSegment(content));
+            } catch (Exception e) {
+                log.warn("Could not copy content {} out of segment {}: {}", content.getContentId(), segment,
+                        e.getMessage());
+            }
+        }
+        return contents.size();
+    }
+
+    /**
+     * The function copies a cold content to the newest segment, as it is, and
+     * records its new location unless it was promoted, deleted or moved in the
+     * meantime. Reads that looked up the old location still find it there until
+     * its segment is deleted.
+     *
+     * @param content The metadata of the content.
+     * @return The method is returning true if the content was copied.
+     */
+    private boolean copyToNewestSegment(FileMetadata content) throws IOException {
+        Path copied = Files.createTempFile("filesave-", ".compaction");
+        try {
+            try (OutputStream out = Files.newOutputStream(copied)) {
+                segmentStore.transferTo(content.getSegment(), content.getSegmentOffset(), 0,
+                        content.getStoredLength(), out);
+            }
+
+            SegmentStore.Location location = segmentStore.append(content.getContentId(), copied);
+            boolean moved = false;
+            try {
+                moved = inTransaction(() -> {
+                    FileContent current = fileContentRepository.findByIdForUpdate(content.getContentId())
+                            .orElse(null);
+                    if (current == null || !Objects.equals(current.getSegment(), content.getSegment())
+                            || !Objects.equals(current.getSegmentOffset(), content.getSegmentOffset())) {
+                        return false;
+                    }
+                    current.setSegment(location.segment());
+                    current.setSegmentOffset(location.offset());
+                    return true;
+                });
+            } finally {
+                if (!moved) {
+                    segmentStore.discard(location, content.getStoredLength());
+                }
+            }
+            return moved;
+        } finally {
+            Files.deleteIfExists(copied);
+        }
+    }
+
+    /**
+     * The function copies a cold content back to the storage, keeping the
+     * encoding it has in the segment. Its bytes stay in the segment, so reads
+     * that looked it up before the promotion still find them, until the
+     * segment is compacted.
+     *
+     * @param file The metadata of a file with the content.
+     */
+    private void promoteToStorage(FileMetadata file) throws IOException {
+        Path stored = Files.createTempFile("filesave-", ".hot");
+        try {
+            try (OutputStream out = Files.newOutputStream(stored)) {
+                segmentStore.transferTo(file.getSegment(), file.getSegmentOffset(), 0, file.getStoredLength(), out);
+            }
+
+            inTransaction(() -> {
+                FileContent current = fileContentRepository.findByIdForUpdate(file.getContentId()).orElse(null);
+                if (current == null || !Objects.equals(current.getSegment(), file.getSegment())
+                        || !Objects.equals(current.getSegmentOffset(), file.getSegmentOffset())) {
+                    return false;
+                }
+                // O Blob é lido do arquivo quando a entidade é gravada, então grava antes de fechá-lo
+                try (InputStream in = Files.newInputStream(stored)) {
+                    fileStorage.store(current, in, current.getStoredSize());
+                    current.setSegment(null);
+                    current.setSegmentOffset(null);
+                    fileContentRepository.saveAndFlush(current);
+                }
+                return true;
+            });
+        } finally {
+            Files.deleteIfExists(stored);
+        }
+    }
+
+    private boolean inTransaction(ContentUpdate update) throws IOException {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                try {
+                    return update.apply();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ContentUpdate {
+        boolean apply() throws IOException;
+    }
+
+}
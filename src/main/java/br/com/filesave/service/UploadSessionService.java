@@ -0,0 +1,317 @@
+package br.com.filesave.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import br.com.filesave.DTOs.UploadFileResponse;
+import br.com.filesave.DTOs.UploadSessionRequest;
+import br.com.filesave.DTOs.UploadSessionResponse;
+import br.com.filesave.exception.FileException;
+import br.com.filesave.model.UploadSession;
+import br.com.filesave.repositories.UploadSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The UploadSessionService class implements resumable uploads. A session
+ * preallocates a staging file with the final size of the upload and every
+ * chunk is written straight to its offset in that file, so chunks can arrive
+ * in parallel and in any order and completing the session needs no assembly.
+ * A marker file records each chunk that was fully written. Chunks of a
+ * session are written under a shared lock and the session is completed,
+ * aborted or removed under an exclusive one, so no chunk is written into a
+ * staged file that is already being saved. The staging file and the lock live
+ * on the node that created the session, so all requests of a session must
+ * reach that node. Sessions not completed before they expire are removed
+ * periodically.
+ */
+@Slf4j
+@Service
+public class UploadSessionService {
+
+    private static final String DATA_FILE = "data";
+
+    private static final String CHUNK_MARKER_SUFFIX = ".done";
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private FileService fileService;
+
+    @Value("${file.upload.session.directory}")
+    private Path directory;
+
+    @Value("${file.upload.session.chunk-size}")
+    private DataSize chunkSize;
+
+    @Value("${file.upload.session.timeout}")
+    private Duration timeout;
+
+    @Value("${spring.servlet.multipart.max-file-size}")
+    private DataSize maxFileSize;
+
+    private final ConcurrentMap<UUID, ReadWriteLock> sessionLocks = new ConcurrentHashMap<>();
+
+    /**
+     * The function starts an upload session, preallocating the staging file.
+     * 
+     * @param request The name, media type and size of the file to be uploaded.
+     * @return The method is returning the state of the new session.
+     */
+    public UploadSessionResponse createSession(UploadSessionRequest request) throws IOException {
+        if (request.getFileName() == null || request.getFileName().isBlank()) {
+            throw new FileException("File name is required");
+        }
+        if (request.getSize() < 0) {
+            throw new FileException("File size must not be negative");
+        }
+        if (maxFileSize.toBytes() >= 0 && request.getSize() > maxFileSize.toBytes()) {
+            throw new FileException("File size exceeds the maximum allowed: " + maxFileSize);
+        }
+
+        UploadSession session = new UploadSession();
+        session.setOriginalName(request.getFileName());
+        session.setType(request.getContentType() != null ? request.getContentType() : "application/octet-stream");
+        session.setSize(request.getSize());
+        session.setChunkSize(chunkSize.toBytes());
+        session.setExpiresAt(Instant.now().plus(timeout));
+        uploadSessionRepository.save(session);
+
+        Path sessionDirectory = resolve(session.getId());
+        Files.createDirectories(sessionDirectory);
+        try (RandomAccessFile data = new RandomAccessFile(sessionDirectory.resolve(DATA_FILE).toFile(), "rw")) {
+            data.setLength(session.getSize());
+        }
+
+        return toResponse(session);
+    }
+
+    /**
+     * The function returns the state of an upload session, so an interrupted
+     * client can resume by sending only the missing chunks.
+     * 
+     * @param sessionId The id of the session.
+     * @return The method is returning the state of the session.
+     */
+    public UploadSessionResponse getSession(UUID sessionId) throws IOException {
+        return toResponse(findSession(sessionId));
+    }
+
+    /**
+     * The function writes one chunk of an upload, streaming the request body
+     * straight to the chunk's offset in the staging file. Sending a chunk again
+     * overwrites it, and the chunk only counts as received again once the new
+     * content was written in full.
+     * 
+     * @param sessionId The id of the session.
+     * @param index     The zero-based index of the chunk.
+     * @param body      The stream with the content of the chunk.
+     */
+    public void writeChunk(UUID sessionId, int index, InputStream body) throws IOException {
+        Lock lock = lockFor(sessionId).readLock();
+        lock.lock();
+        try {
+            writeChunk(findSession(sessionId), index, body);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeChunk(UploadSession session, int index, InputStream body) throws IOException {
+        UUID sessionId = session.getId();
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new FileException("Invalid chunk index: " + index);
+        }
+
+        long offset = index * session.getChunkSize();
+        long expected = Math.min(session.getChunkSize(), session.getSize() - offset);
+        Path sessionDirectory = resolve(sessionId);
+        Path marker = sessionDirectory.resolve(index + CHUNK_MARKER_SUFFIX);
+        // Um reenvio interrompido deixa o pedaço sobrescrito pela metade
+        Files.deleteIfExists(marker);
+
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(sessionDirectory.resolve(DATA_FILE), StandardOpenOption.WRITE)) {
+            ReadableByteChannel source = Channels.newChannel(body);
+            while (written < expected) {
+                long count = channel.transferFrom(source, offset + written, expected - written);
+                if (count <= 0) {
+                    break;
+                }
+                written += count;
+            }
+        }
+        if (written != expected || body.read() != -1) {
+            throw new FileException("Chunk " + index + " must have exactly " + expected + " bytes");
+        }
+
+        Files.write(marker, new byte[0]);
+    }
+
+    /**
+     * The function completes an upload session once all chunks were received,
+     * saving the staged file like a regular upload and removing the session.
+     * The session is claimed first, so concurrent requests to complete it
+     * create a single file; if saving fails the claim is released and the
+     * session can be completed again. Chunks still being written are awaited,
+     * and chunks sent after the claim are rejected.
+     * 
+     * @param sessionId The id of the session.
+     * @return The method is returning an instance of the `UploadFileResponse`
+     *         class.
+     */
+    public UploadFileResponse completeSession(UUID sessionId) throws IOException {
+        Lock lock = lockFor(sessionId).writeLock();
+        lock.lock();
+        try {
+            return completeSession(findSession(sessionId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private UploadFileResponse completeSession(UploadSession session) throws IOException {
+        UUID sessionId = session.getId();
+        List<Integer> receivedChunks = getReceivedChunks(sessionId);
+        if (receivedChunks.size() != session.getChunkCount()) {
+            throw new FileException("Upload incomplete: received " + receivedChunks.size() + " of "
+                    + session.getChunkCount() + " chunks");
+        }
+
+        if (uploadSessionRepository.claim(sessionId, Instant.now()) != 1) {
+            throw new FileException("Upload session is already being completed: " + sessionId);
+        }
+
+        FileSystemResource staged = new FileSystemResource(resolve(sessionId).resolve(DATA_FILE));
+        UploadFileResponse response;
+        try {
+            response = fileService.saveFile(session.getOriginalName(), session.getType(), session.getSize(),
+                    staged);
+        } catch (IOException | RuntimeException e) {
+            uploadSessionRepository.release(sessionId);
+            throw e;
+        }
+        deleteSession(session);
+        return response;
+    }
+
+    /**
+     * The function aborts an upload session, discarding the chunks received.
+     * 
+     * @param sessionId The id of the session.
+     */
+    public void abortSession(UUID sessionId) throws IOException {
+        Lock lock = lockFor(sessionId).writeLock();
+        lock.lock();
+        try {
+            deleteSession(findSession(sessionId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The function removes the sessions that expired before being completed,
+     * along with their staged chunks.
+     */
+    @Scheduled(fixedDelayString = "${file.upload.session.cleanup-interval}")
+    public void removeExpiredSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByExpiresAtBefore(Instant.now());
+        for (UploadSession session : expired) {
+            Lock lock = lockFor(session.getId()).writeLock();
+            // Uma parte ainda sendo gravada adia a remoção para a próxima execução
+            if (!lock.tryLock()) {
+                continue;
+            }
+            try {
+                deleteSession(session);
+            } catch (IOException e) {
+                log.warn("Could not remove upload session {}: {}", session.getId(), e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (!expired.isEmpty()) {
+            log.info("Removed {} expired upload sessions", expired.size());
+        }
+    }
+
+    private UploadSession findSession(UUID sessionId) {
+        UploadSession session = uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new FileException("Could not find upload session: " + sessionId));
+        if (session.getExpiresAt().isBefore(Instant.now())) {
+            throw new FileException("Upload session expired: " + sessionId);
+        }
+        if (session.getCompletingAt() != null) {
+            throw new FileException("Upload session is being completed: " + sessionId);
+        }
+        return session;
+    }
+
+    private List<Integer> getReceivedChunks(UUID sessionId) throws IOException {
+        List<Integer> receivedChunks = new ArrayList<>();
+        try (Stream<Path> files = Files.list(resolve(sessionId))) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(CHUNK_MARKER_SUFFIX))
+                    .map(name -> Integer.valueOf(name.substring(0, name.length() - CHUNK_MARKER_SUFFIX.length())))
+                    .sorted()
+                    .forEach(receivedChunks::add);
+        }
+        return receivedChunks;
+    }
+
+    private ReadWriteLock lockFor(UUID sessionId) {
+        return sessionLocks.computeIfAbsent(sessionId, id -> new ReentrantReadWriteLock());
+    }
+
+    private void deleteSession(UploadSession session) throws IOException {
+        uploadSessionRepository.delete(session);
+        // Quem esperava por este lock relê a sessão já removida e falha
+        sessionLocks.remove(session.getId());
+        Path sessionDirectory = resolve(session.getId());
+        if (Files.exists(sessionDirectory)) {
+            try (Stream<Path> files = Files.walk(sessionDirectory)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session) throws IOException {
+        return new UploadSessionResponse(session.getId(), session.getOriginalName(), session.getSize(),
+                session.getChunkSize(), session.getChunkCount(), getReceivedChunks(session.getId()),
+                session.getExpiresAt());
+    }
+
+    private Path resolve(UUID sessionId) {
+        return directory.resolve(sessionId.toString());
+    }
+
+}
@@ -0,0 +1,97 @@
+package br.com.filesave.service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import br.com.filesave.model.FileMetadata;
+
+/**
+ * The ViewPolicy class decides which files can be displayed inline by the
+ * view endpoint, from the extensions in {@code file.view.extensions} and the
+ * media types in {@code file.view.types}. Both must be allowed, so a file
+ * cannot be rendered by the browser as a type it was not meant to be viewed
+ * as; an empty list of types only checks the extension. The check only needs
+ * the file metadata, so disallowed views never read the content.
+ */
+@Component
+public class ViewPolicy {
+
+    private final Set<String> extensions;
+
+    private final Set<String> types;
+
+    public ViewPolicy(@Value("${file.view.extensions}") List<String> extensions,
+            @Value("${file.view.types}") List<String> types) {
+        this.extensions = normalize(extensions);
+        this.types = normalize(types);
+    }
+
+    /**
+     * The function checks if a file can be viewed inline.
+     * 
+     * @param file The metadata of the file.
+     * @return The method is returning true if the extension of the original
+     *         name and the media type of the file are both allowed.
+     */
+    public boolean isViewable(FileMetadata file) {
+        return extensions.contains(getFileExtension(file.getOriginalName()))
+                && (types.isEmpty() || types.contains(getMediaType(file.getType())));
+    }
+
+    private static Set<String> normalize(List<String> values) {
+        return values.stream()
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(value -> value.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * The getFileExtension function returns the file extension of a given file
+     * name.
+     * 
+     * @param fileName The `fileName` parameter is a string that represents the name
+     *                 of a file, including
+     *                 its extension.
+     * @return The method is returning the file extension of the given fileName.
+     */
+    private String getFileExtension(String fileName) {
+        if (fileName == null) {
+            return "";
+        }
+        int dotIndex = fileName.lastIndexOf(".");
+        if (dotIndex != -1 && dotIndex < fileName.length() - 1) {
+            return fileName.substring(dotIndex + 1).toLowerCase(Locale.ROOT);
+        }
+        return "";
+    }
+
+    /**
+     * The function returns the type and subtype of a media type, without its
+     * parameters, such as {@code text/plain} for
+     * {@code text/plain;charset=UTF-8}.
+     * 
+     * @param type The media type of the file.
+     * @return The method is returning the media type in lower case, or an empty
+     *         string when it is missing or invalid.
+     */
+    private String getMediaType(String type) {
+        if (type == null) {
+            return "";
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(type);
+            return (mediaType.getType() + "/" + mediaType.getSubtype()).toLowerCase(Locale.ROOT);
+        } catch (InvalidMediaTypeException e) {
+            return "";
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+package br.com.filesave.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * The ContentCompression class compresses the content of compressible media
+ * types, such as text, JSON and CSV, before it is written to the storage. The
+ * content is compressed with the {@code deflate} codec (zlib), which is also a
+ * standard HTTP content coding, so clients that accept it are sent the stored
+ * bytes as they are and the others get the content decompressed on the fly.
+ * Content is only kept compressed when that makes it smaller.
+ */
+@Component
+public class ContentCompression {
+
+  public static final String DEFLATE = "deflate";
+
+  private final boolean enabled;
+
+  private final List<MediaType> types;
+
+  private final long minSize;
+
+  private final int bufferSize;
+
+  public ContentCompression(@Value("${file.compression.enabled}") boolean enabled,
+      @Value("${file.compression.types}") List<String> types,
+      @Value("${file.compression.min-size}") DataSize minSize,
+      @Value("${file.upload.buffer-size:64KB}") DataSize bufferSize) {
+    this.enabled = enabled;
+    this.types = types.stream().map(MediaType::parseMediaType).toList();
+    this.minSize = minSize.toBytes();
+    this.bufferSize = (int) bufferSize.toBytes();
+  }
+
+  /**
+   * The function prepares content to be stored, compressing it into a
+   * temporary file when its media type is compressible.
+   * 
+   * @param source      The source of the content as uploaded.
+   * @param size        The size of the content in bytes.
+   * @param contentType The media type of the file.
+   * @return The method is returning the content to be stored, which must be
+   *         closed once the storage is done with it.
+   */
+  public EncodedContent encode(InputStreamSource source, long size, String contentType) throws IOException {
+    if (!isCompressible(contentType, size)) {
+      return new EncodedContent(source, size, null, null);
+    }
+    return compress(source, size);
+  }
+
+  /**
+   * The function compresses content into a temporary file whatever its media
+   * type, keeping it as it is when compressing does not make it smaller.
+   * 
+   * @param source The source of the content.
+   * @param size   The size of the content in bytes.
+   * @return The method is returning the content to be stored, which must be
+   *         closed once the storage is done with it.
+   */
+  public EncodedContent compress(InputStreamSource source, long size) throws IOException {
+    Path compressed = Files.createTempFile("filesave-", "." + DEFLATE);
+    try {
+      try (InputStream in = source.getInputStream();
+          OutputStream out = new DeflaterOutputStream(
+              new BufferedOutputStream(Files.newOutputStream(compressed), bufferSize))) {
+        in.transferTo(out);
+      }
+
+      long compressedSize = Files.size(compressed);
+      if (compressedSize >= size) {
+        Files.delete(compressed);
+        return new EncodedContent(source, size, null, null);
+      }
+      return new EncodedContent(new FileSystemResource(compressed), compressedSize, DEFLATE, compressed);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(compressed);
+      throw e;
+    }
+  }
+
+  /**
+   * The function wraps a stream so that stored content written to it comes
+   * out decompressed, keeping only a range of the decompressed bytes.
+   * Closing the returned stream finishes the decompression but does not close
+   * the given stream.
+   * 
+   * @param encoding The codec the content is stored with.
+   * @param position The zero-based offset of the first decompressed byte to
+   *                 keep.
+   * @param length   The number of decompressed bytes to keep.
+   * @param out      The stream the decompressed range is written to.
+   * @return The method is returning the stream the stored content is written
+   *         to.
+   */
+  public OutputStream decode(String encoding, long position, long length, OutputStream out) {
+    if (!DEFLATE.equals(encoding)) {
+      throw new IllegalArgumentException("Unsupported content encoding: " + encoding);
+    }
+    return new InflaterOutputStream(new RangeOutputStream(out, position, length));
+  }
+
+  private boolean isCompressible(String contentType, long size) {
+    if (!enabled || contentType == null || size < minSize) {
+      return false;
+    }
+    try {
+      MediaType mediaType = MediaType.parseMediaType(contentType);
+      return types.stream().anyMatch(type -> type.includes(mediaType));
+    } catch (InvalidMediaTypeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * The EncodedContent record is the content handed to the storage: either
+   * the content as uploaded or a temporary file with the compressed content,
+   * which is deleted when the record is closed.
+   */
+  public record EncodedContent(InputStreamSource source, long size, String encoding, Path file)
+      implements Closeable {
+
+    @Override
+    public void close() throws IOException {
+      if (file != null) {
+        Files.deleteIfExists(file);
+      }
+    }
+
+  }
+
+  /**
+   * The RangeOutputStream class passes on only a range of the bytes written
+   * to it and never closes the stream it wraps.
+   */
+  private static class RangeOutputStream extends FilterOutputStream {
+
+    private final long start;
+
+    private final long end;
+
+    private long written;
+
+    RangeOutputStream(OutputStream out, long position, long length) {
+      super(out);
+      this.start = position;
+      this.end = position + length;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (written >= start && written < end) {
+        out.write(b);
+      }
+      written++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      long from = Math.max(written, start);
+      long to = Math.min(written + len, end);
+      if (from < to) {
+        out.write(b, off + (int) (from - written), (int) (to - from));
+      }
+      written += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+
+  }
+
+}
@@ -0,0 +1,88 @@
+package br.com.filesave.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Blob;
+import java.sql.SQLException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import br.com.filesave.config.ReadReplicas;
+import br.com.filesave.exception.FileException;
+import br.com.filesave.model.FileContent;
+import br.com.filesave.model.FileMetadata;
+import br.com.filesave.repositories.FileContentRepository;
+import br.com.filesave.utils.FileUtils;
+
+/**
+ * The DatabaseFileStorage class keeps the content of the files in the
+ * {@code data} Blob column of the {@code file_contents} table. The Blob is
+ * written when the entity is saved and read inside a transaction, as
+ * PostgreSQL large objects require. Reads run in read-only transactions, so
+ * they are served by the read replicas when there are any.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.type", havingValue = "database", matchIfMissing = true)
+public class DatabaseFileStorage implements FileStorage {
+
+  @Autowired
+  private FileContentRepository fileContentRepository;
+
+  @Autowired
+  private ReadReplicas readReplicas;
+
+  @Override
+  public void store(FileContent content, InputStream data, long size) {
+    content.setData(FileUtils.createBlob(data, size));
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public void transferTo(FileMetadata file, long position, long length, OutputStream out) throws IOException {
+    Blob blob = fileContentRepository.findDataById(file.getContentId()).orElse(null);
+    if (blob == null && readReplicas.isEnabled()) {
+      // O conteúdo recém-enviado pode ainda não ter chegado à réplica
+      try {
+        readReplicas.fromPrimary(status -> {
+          try {
+            transferBlob(file, fileContentRepository.findDataById(file.getContentId()).orElse(null), position,
+                length, out);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          return null;
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      return;
+    }
+    transferBlob(file, blob, position, length, out);
+  }
+
+  private void transferBlob(FileMetadata file, Blob blob, long position, long length, OutputStream out)
+      throws IOException {
+    if (blob == null) {
+      throw new FileException("Could not find content of file: " + file.getUniqueName());
+    }
+    try (InputStream in = FileUtils.openBlobStream(blob, position, length)) {
+      in.transferTo(out);
+    } catch (SQLException e) {
+      throw new IOException("Error reading Blob: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  @Transactional
+  public void delete(FileContent content) {
+    if (content.getId() != null) {
+      fileContentRepository.unlinkData(content.getId());
+    }
+  }
+
+}
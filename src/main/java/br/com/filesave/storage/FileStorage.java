@@ -0,0 +1,50 @@
+package br.com.filesave.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import br.com.filesave.model.FileContent;
+import br.com.filesave.model.FileMetadata;
+
+/**
+ * The FileStorage interface is the storage engine behind the file service. The
+ * file metadata is always kept in the {@code files} and {@code file_contents}
+ * tables; implementations decide where the content lives. The active implementation is selected with
+ * the {@code file.storage.type} property.
+ */
+public interface FileStorage {
+
+  /**
+   * The function writes new content, recording on the entity where it was
+   * stored. It is called before the entity is saved.
+   * 
+   * @param content The entity of the content being stored.
+   * @param data    The stream that provides the content.
+   * @param size    The number of bytes that will be read from the stream.
+   */
+  void store(FileContent content, InputStream data, long size) throws IOException;
+
+  /**
+   * The function streams a range of a stored file's content to the given
+   * output stream. Only the metadata of the file is needed; the content is
+   * fetched from the storage here.
+   * 
+   * @param file     The metadata of the stored file.
+   * @param position The zero-based offset of the first byte to write.
+   * @param length   The number of bytes to write.
+   * @param out      The stream the content is written to.
+   */
+  void transferTo(FileMetadata file, long position, long length, OutputStream out) throws IOException;
+
+  /**
+   * The function removes the content written by
+   * {@link #store(FileContent, InputStream, long)}, when the entity could not
+   * be saved or is about to be deleted. Inside a transaction, the content is
+   * only removed if the transaction commits.
+   * 
+   * @param content The entity of the content that is removed.
+   */
+  void delete(FileContent content) throws IOException;
+
+}
@@ -0,0 +1,110 @@
+package br.com.filesave.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import br.com.filesave.model.FileContent;
+import br.com.filesave.model.FileMetadata;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The FilesystemFileStorage class keeps the content of the files on the local
+ * disk, under {@code file.storage.directory}, and only the metadata in the
+ * database. Downloads are served with {@link FileChannel#transferTo}, so the
+ * content is never copied into the Java heap.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "file.storage.type", havingValue = "filesystem")
+public class FilesystemFileStorage implements FileStorage {
+
+  private final Path directory;
+
+  public FilesystemFileStorage(@Value("${file.storage.directory}") Path directory) {
+    this.directory = directory.toAbsolutePath().normalize();
+  }
+
+  @Override
+  public void store(FileContent content, InputStream data, long size) throws IOException {
+    String storageKey = UUID.randomUUID().toString();
+    Path target = resolve(storageKey);
+    Files.createDirectories(target.getParent());
+
+    // Escreve em um arquivo temporário para nunca expor conteúdo incompleto
+    Path temp = Files.createTempFile(target.getParent(), storageKey, ".tmp");
+    try {
+      Files.copy(data, temp, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    content.setStorageKey(storageKey);
+  }
+
+  @Override
+  public void transferTo(FileMetadata file, long position, long length, OutputStream out) throws IOException {
+    try (FileChannel channel = FileChannel.open(resolve(file.getStorageKey()), StandardOpenOption.READ)) {
+      WritableByteChannel target = Channels.newChannel(out);
+      long transferred = 0;
+      while (transferred < length) {
+        long count = channel.transferTo(position + transferred, length - transferred, target);
+        if (count <= 0 && position + transferred >= channel.size()) {
+          throw new IOException("Unexpected end of file: " + file.getStorageKey());
+        }
+        transferred += count;
+      }
+    }
+  }
+
+  @Override
+  public void delete(FileContent content) throws IOException {
+    if (content.getStorageKey() == null) {
+      return;
+    }
+    Path path = resolve(content.getStorageKey());
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      Files.deleteIfExists(path);
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        try {
+          Files.deleteIfExists(path);
+        } catch (IOException e) {
+          log.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+      }
+    });
+  }
+
+  /**
+   * The function resolves the path of a storage key, spreading the files over
+   * sub-directories named after the first two characters of the key so no
+   * directory grows too large.
+   * 
+   * @param storageKey The storage key of the file.
+   * @return The method is returning the path of the file on disk.
+   */
+  private Path resolve(String storageKey) {
+    return directory.resolve(storageKey.substring(0, 2)).resolve(storageKey);
+  }
+
+}
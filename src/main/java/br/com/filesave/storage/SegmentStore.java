@@ -0,0 +1,294 @@
+package br.com.filesave.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The SegmentStore class keeps cold content in append-only segment files on
+ * the local disk, under {@code file.tiering.directory}. Content is appended to
+ * the newest segment until it reaches {@code file.tiering.segment-size}, when
+ * a new segment is started. Segments are never rewritten, so content is read
+ * from its offset while other content is appended, and an offset handed out
+ * stays valid until its segment is deleted. Each content is preceded by a
+ * header with its id and length, so the offsets kept in the database can be
+ * rebuilt from the segments alone. The space of content promoted or deleted
+ * is reclaimed by the {@code TieringService}, which copies the content still
+ * in use out of the sealed segments, those no longer appended to, and deletes
+ * them once they hold nothing.
+ */
+@Slf4j
+@Component
+public class SegmentStore implements DisposableBean {
+
+  public static final int HEADER_SIZE = 24;
+
+  private static final String SUFFIX = ".segment";
+
+  private final Path directory;
+
+  private final long segmentSize;
+
+  private final Map<Integer, FileChannel> readers = new ConcurrentHashMap<>();
+
+  // Um ReentrantLock, e não synchronized, para a escrita no disco não prender a thread virtual à da plataforma
+  private final Lock writeLock = new ReentrantLock();
+
+  private FileChannel writer;
+
+  private int writerSegment;
+
+  public SegmentStore(@Value("${file.tiering.directory}") Path directory,
+      @Value("${file.tiering.segment-size}") DataSize segmentSize) {
+    this.directory = directory.toAbsolutePath().normalize();
+    this.segmentSize = segmentSize.toBytes();
+  }
+
+  /**
+   * The function appends content to the newest segment and forces it to the
+   * disk, so the location returned can be recorded in the database right
+   * away. Appends are serialized; a failed append leaves the segment as it
+   * was.
+   *
+   * @param contentId The id of the content, written to its header.
+   * @param source    The file with the bytes to append.
+   * @return The method is returning where the bytes were appended.
+   */
+  public Location append(UUID contentId, Path source) throws IOException {
+    writeLock.lock();
+    try {
+      return appendLocked(contentId, source);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private Location appendLocked(UUID contentId, Path source) throws IOException {
+    long length = Files.size(source);
+    FileChannel channel = writerFor(length);
+    long start = channel.size();
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+        .putLong(contentId.getMostSignificantBits())
+        .putLong(contentId.getLeastSignificantBits())
+        .putLong(length)
+        .flip();
+    try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+      while (header.hasRemaining()) {
+        channel.write(header, start + header.position());
+      }
+      long offset = start + HEADER_SIZE;
+      long transferred = 0;
+      while (transferred < length) {
+        long count = channel.transferFrom(in, offset + transferred, length - transferred);
+        if (count <= 0) {
+          throw new IOException("Unexpected end of file: " + source);
+        }
+        transferred += count;
+      }
+      channel.force(false);
+      return new Location(writerSegment, offset);
+    } catch (IOException e) {
+      // Descarta o que foi escrito, para o próximo conteúdo começar no mesmo lugar
+      channel.truncate(start);
+      throw e;
+    }
+  }
+
+  /**
+   * The function writes a range of the bytes of a content kept in a segment.
+   *
+   * @param segment  The segment holding the content.
+   * @param offset   The offset of the content in the segment.
+   * @param position The zero-based offset of the first byte to write,
+   *                 relative to the start of the content.
+   * @param length   The number of bytes to write.
+   * @param out      The stream the bytes are written to.
+   */
+  public void transferTo(int segment, long offset, long position, long length, OutputStream out)
+      throws IOException {
+    FileChannel channel = reader(segment);
+    WritableByteChannel target = Channels.newChannel(out);
+    long transferred = 0;
+    while (transferred < length) {
+      long count = channel.transferTo(offset + position + transferred, length - transferred, target);
+      if (count <= 0 && offset + position + transferred >= channel.size()) {
+        throw new IOException("Unexpected end of segment: " + segment);
+      }
+      transferred += count;
+    }
+  }
+
+  /**
+   * The function discards the last content appended, when the location it was
+   * appended to was not recorded anywhere, so the next append reuses its
+   * space. Content appended after it is left for the reclamation of its
+   * segment.
+   *
+   * @param location Where the content was appended.
+   * @param length   The number of bytes of the content.
+   * @return The method is returning true if the content was discarded.
+   */
+  public boolean discard(Location location, long length) throws IOException {
+    writeLock.lock();
+    try {
+      if (writer == null || location.segment() != writerSegment || writer.size() != location.offset() + length) {
+        return false;
+      }
+      writer.truncate(location.offset() - HEADER_SIZE);
+      return true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * The function lists the sealed segments, the ones before the segment
+   * being appended to, which no longer change.
+   *
+   * @return The method is returning the size in bytes of each sealed segment,
+   *         by segment.
+   */
+  public Map<Integer, Long> sealedSegments() throws IOException {
+    writeLock.lock();
+    try {
+      Map<Integer, Long> sizes = new TreeMap<>();
+      if (!Files.isDirectory(directory)) {
+        return sizes;
+      }
+      int current = currentSegment();
+      for (int segment : segments()) {
+        if (segment < current) {
+          sizes.put(segment, Files.size(resolve(segment)));
+        }
+      }
+      return sizes;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * The function deletes a sealed segment. Reads still going on in it fail,
+   * so the segment must have held no content for long enough that no read
+   * can have looked up a location in it.
+   *
+   * @param segment The sealed segment.
+   */
+  public void delete(int segment) throws IOException {
+    writeLock.lock();
+    try {
+      if (segment >= currentSegment()) {
+        throw new IllegalArgumentException("Segment " + segment + " is still being appended to");
+      }
+      FileChannel reader = readers.remove(segment);
+      if (reader != null) {
+        closeQuietly(reader);
+      }
+      Files.deleteIfExists(resolve(segment));
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    writeLock.lock();
+    try {
+      if (writer != null) {
+        closeQuietly(writer);
+      }
+      readers.values().forEach(this::closeQuietly);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private FileChannel writerFor(long length) throws IOException {
+    if (writer == null) {
+      Files.createDirectories(directory);
+      writerSegment = Math.max(latestSegment(), 1);
+      writer = FileChannel.open(resolve(writerSegment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+    if (writer.size() > 0 && writer.size() + HEADER_SIZE + length > segmentSize) {
+      writer.close();
+      writerSegment++;
+      writer = FileChannel.open(resolve(writerSegment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+    return writer;
+  }
+
+  private FileChannel reader(int segment) throws IOException {
+    try {
+      return readers.computeIfAbsent(segment, key -> {
+        try {
+          return FileChannel.open(resolve(key), StandardOpenOption.READ);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  // Sem o writer aberto, o próximo append continua o último segmento
+  private int currentSegment() throws IOException {
+    return writer != null ? writerSegment : latestSegment();
+  }
+
+  private int latestSegment() throws IOException {
+    return segments().stream().mapToInt(Integer::intValue).max().orElse(0);
+  }
+
+  private List<Integer> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(path -> path.getFileName().toString())
+          .filter(name -> name.endsWith(SUFFIX))
+          .map(name -> Integer.valueOf(name.substring(0, name.length() - SUFFIX.length())))
+          .toList();
+    }
+  }
+
+  private Path resolve(int segment) {
+    return directory.resolve(String.format("%08d%s", segment, SUFFIX));
+  }
+
+  private void closeQuietly(FileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      log.warn("Could not close segment: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * The Location record is where a content was appended: the segment and the
+   * offset of its first byte.
+   */
+  public record Location(int segment, long offset) {
+  }
+
+}
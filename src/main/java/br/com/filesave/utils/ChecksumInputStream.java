@@ -0,0 +1,73 @@
+package br.com.filesave.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The ChecksumInputStream class computes the SHA-256 checksum of the content
+ * while it is read, so the checksum of an upload costs no extra pass over the
+ * data. It also counts the bytes read, to tell when the checksum is complete.
+ */
+public class ChecksumInputStream extends DigestInputStream {
+
+  private long count;
+
+  public ChecksumInputStream(InputStream in) {
+    super(in, newDigest());
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b != -1) {
+      count++;
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int read = super.read(b, off, len);
+    if (read > 0) {
+      count += read;
+    }
+    return read;
+  }
+
+  /**
+   * The function returns the number of bytes read so far.
+   * 
+   * @return The method is returning the number of bytes read.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * The function returns the checksum of the bytes read so far, as a
+   * lowercase hexadecimal string.
+   * 
+   * @return The method is returning the SHA-256 checksum of the content.
+   */
+  public String getChecksum() {
+    try {
+      MessageDigest digest = (MessageDigest) getMessageDigest().clone();
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException("Error computing checksum: " + e.getMessage(), e);
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Error creating digest: " + e.getMessage(), e);
+    }
+  }
+
+}
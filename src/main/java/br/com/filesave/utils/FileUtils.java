@@ -1,10 +1,11 @@
 package br.com.filesave.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Blob;
 import java.sql.SQLException;
 
-import javax.sql.rowset.serial.SerialBlob;
+import org.hibernate.engine.jdbc.BlobProxy;
 
 public class FileUtils {
 
@@ -12,38 +13,32 @@ public class FileUtils {
   }
 
   /**
-   * The function creates a Blob object from a byte array.
+   * The function creates a Blob object backed by an input stream. The content is
+   * not copied into memory: the JDBC driver pulls it from the stream in chunks
+   * when the entity is flushed.
    * 
-   * @param data The "data" parameter is a byte array that represents the content
-   *             of the Blob object that
-   *             you want to create.
+   * @param data   The stream that provides the content of the Blob.
+   * @param length The number of bytes that will be read from the stream.
    * @return The method is returning a Blob object.
    */
-  public static Blob createBlob(byte[] data) {
-    try {
-      return new SerialBlob(data);
-    } catch (SQLException e) {
-      throw new IllegalStateException("Error creating Blob: " + e.getMessage(), e);
-    }
+  public static Blob createBlob(InputStream data, long length) {
+    return BlobProxy.generateProxy(data, length);
   }
 
   /**
-   * The function converts a Blob object to a byte array in Java.
+   * The function opens a stream over a range of a Blob, so only the requested
+   * bytes are read from the database.
    * 
-   * @param blob The "blob" parameter is of type Blob, which represents a binary
-   *             large object in a
-   *             database. It can store large amounts of binary data, such as
-   *             images, audio, or video files.
-   * @return The method is returning a byte array.
+   * @param blob     The Blob to read from.
+   * @param position The zero-based offset of the first byte to read.
+   * @param length   The number of bytes to read.
+   * @return The method is returning an InputStream over the requested range.
    */
-  public static byte[] blobToByteArray(Blob blob) throws SQLException, IOException {
-    if (blob == null)
-      return null;
-
-    int length = (int) blob.length();
-    byte[] data = blob.getBytes(1, length);
-    blob.free();
-    return data;
+  public static InputStream openBlobStream(Blob blob, long position, long length) throws SQLException {
+    if (length == 0) {
+      return InputStream.nullInputStream();
+    }
+    return blob.getBinaryStream(position + 1, length);
   }
 
   /**
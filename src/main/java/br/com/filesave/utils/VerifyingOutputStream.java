@@ -0,0 +1,108 @@
+package br.com.filesave.utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import br.com.filesave.exception.ChecksumMismatchException;
+
+/**
+ * The VerifyingOutputStream class computes the SHA-256 checksum of a content
+ * while it is written through, so verifying a download costs no extra pass
+ * over the data. The last byte is held back until the whole content has been
+ * written and its checksum matches, so a client reading a corrupted content
+ * gets a truncated response instead of the corrupted content in full.
+ */
+public class VerifyingOutputStream extends FilterOutputStream {
+
+  private final MessageDigest digest;
+
+  private final long length;
+
+  private final String checksum;
+
+  private long written;
+
+  private ChecksumMismatchException failure;
+
+  /**
+   * @param out      The stream the content is written to.
+   * @param length   The length of the whole content in bytes.
+   * @param checksum The expected SHA-256 checksum, as a lowercase hexadecimal
+   *                 string.
+   */
+  public VerifyingOutputStream(OutputStream out, long length, String checksum) {
+    super(out);
+    this.length = length;
+    this.checksum = checksum;
+    try {
+      this.digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Error creating digest: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    // O FileChannel.transferTo ignora um erro depois de uma escrita parcial e
+    // tenta de novo, então o mesmo erro é repetido
+    if (failure != null) {
+      throw failure;
+    }
+    if (len == 0) {
+      return;
+    }
+    if (written + len > length) {
+      throw fail("Content is longer than " + length + " bytes");
+    }
+    digest.update(b, off, len);
+    written += len;
+    if (written < length) {
+      out.write(b, off, len);
+      return;
+    }
+
+    // Só envia o último byte depois de conferir o checksum
+    out.write(b, off, len - 1);
+    String actual = HexFormat.of().formatHex(digest.digest());
+    if (!actual.equals(checksum)) {
+      throw fail("Content checksum " + actual + " does not match " + checksum);
+    }
+    out.write(b[off + len - 1]);
+  }
+
+  /**
+   * The function checks that the whole content was written, since a content
+   * shorter than expected never reaches the checksum comparison.
+   *
+   * @throws ChecksumMismatchException If fewer bytes were written than the
+   *                                   length of the content.
+   */
+  public void verify() throws ChecksumMismatchException {
+    if (failure != null) {
+      throw failure;
+    }
+    if (written != length) {
+      throw fail("Content is shorter than " + length + " bytes: " + written);
+    }
+  }
+
+  private ChecksumMismatchException fail(String message) {
+    failure = new ChecksumMismatchException(message);
+    return failure;
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+  }
+
+}
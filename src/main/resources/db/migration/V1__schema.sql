@@ -0,0 +1,96 @@
+-- Esquema criado até aqui pelo ddl-auto=update do Hibernate. Os comandos não
+-- falham quando o objeto já existe, então bancos criados antes das migrações
+-- são completados em vez de recriados.
+
+CREATE TABLE IF NOT EXISTS file_contents (
+  id uuid NOT NULL,
+  checksum varchar(255) UNIQUE,
+  size bigint,
+  encoding varchar(255),
+  stored_size bigint,
+  reference_count bigint NOT NULL,
+  storage_key varchar(255),
+  data oid,
+  segment integer,
+  segment_offset bigint,
+  PRIMARY KEY (id)
+);
+
+ALTER TABLE file_contents ADD COLUMN IF NOT EXISTS encoding varchar(255);
+ALTER TABLE file_contents ADD COLUMN IF NOT EXISTS stored_size bigint;
+ALTER TABLE file_contents ADD COLUMN IF NOT EXISTS storage_key varchar(255);
+ALTER TABLE file_contents ADD COLUMN IF NOT EXISTS segment integer;
+ALTER TABLE file_contents ADD COLUMN IF NOT EXISTS segment_offset bigint;
+
+CREATE TABLE IF NOT EXISTS files (
+  id uuid NOT NULL,
+  unique_name varchar(255) UNIQUE,
+  original_name varchar(255),
+  type varchar(255),
+  size bigint,
+  uploaded_at timestamp(6) with time zone,
+  last_read_at timestamp(6) with time zone,
+  read_count bigint DEFAULT 0 NOT NULL,
+  content_id uuid,
+  PRIMARY KEY (id)
+);
+
+-- Bancos anteriores ao file_contents guardavam o conteúdo na coluna file, que a V2 migra
+ALTER TABLE files ADD COLUMN IF NOT EXISTS size bigint;
+ALTER TABLE files ADD COLUMN IF NOT EXISTS uploaded_at timestamp(6) with time zone;
+ALTER TABLE files ADD COLUMN IF NOT EXISTS last_read_at timestamp(6) with time zone;
+ALTER TABLE files ADD COLUMN IF NOT EXISTS read_count bigint DEFAULT 0 NOT NULL;
+ALTER TABLE files ADD COLUMN IF NOT EXISTS content_id uuid;
+
+CREATE TABLE IF NOT EXISTS file_derivatives (
+  id uuid NOT NULL,
+  source_id uuid NOT NULL,
+  size integer NOT NULL,
+  type varchar(255),
+  content_id uuid NOT NULL,
+  created_at timestamp(6) with time zone,
+  PRIMARY KEY (id),
+  UNIQUE (source_id, size)
+);
+
+CREATE TABLE IF NOT EXISTS file_name_counters (
+  name varchar(255) NOT NULL,
+  counter bigint NOT NULL,
+  PRIMARY KEY (name)
+);
+
+CREATE TABLE IF NOT EXISTS upload_sessions (
+  id uuid NOT NULL,
+  original_name varchar(255),
+  type varchar(255),
+  size bigint NOT NULL,
+  chunk_size bigint NOT NULL,
+  created_at timestamp(6) with time zone,
+  expires_at timestamp(6) with time zone,
+  PRIMARY KEY (id)
+);
+
+-- As chaves estrangeiras têm os nomes que o Hibernate gerava, para não duplicar as existentes
+DO $$
+BEGIN
+  IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fks0alxsago2x875dgvc6nwglx6') THEN
+    ALTER TABLE files ADD CONSTRAINT fks0alxsago2x875dgvc6nwglx6
+      FOREIGN KEY (content_id) REFERENCES file_contents;
+  END IF;
+  IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fk5t1fe1lw2sx0wlntei3yjwdof') THEN
+    ALTER TABLE file_derivatives ADD CONSTRAINT fk5t1fe1lw2sx0wlntei3yjwdof
+      FOREIGN KEY (source_id) REFERENCES file_contents;
+  END IF;
+  IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fk5grbc5thmb5ytjp62sr2dychr') THEN
+    ALTER TABLE file_derivatives ADD CONSTRAINT fk5grbc5thmb5ytjp62sr2dychr
+      FOREIGN KEY (content_id) REFERENCES file_contents;
+  END IF;
+END $$;
+
+CREATE INDEX IF NOT EXISTS files_uploaded_at_idx ON files (uploaded_at, id);
+CREATE INDEX IF NOT EXISTS files_type_uploaded_at_idx ON files (type, uploaded_at, id);
+CREATE INDEX IF NOT EXISTS files_size_idx ON files (size);
+CREATE INDEX IF NOT EXISTS files_content_id_idx ON files (content_id);
+
+-- O filtro por prefixo do nome (LIKE 'prefixo%') só usa um índice B-tree com varchar_pattern_ops
+CREATE INDEX IF NOT EXISTS files_unique_name_prefix_idx ON files (unique_name varchar_pattern_ops);
@@ -0,0 +1,11 @@
+-- Arquivos enviados antes da tabela file_contents guardavam o conteúdo na
+-- coluna file de files. O large object não é copiado: a nova linha aponta para
+-- o mesmo oid.
+DO $$
+BEGIN
+  IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = 'files' AND column_name = 'file') THEN
+    INSERT INTO file_contents (id, size, reference_count, data)
+    SELECT id, size, 1, file FROM files WHERE content_id IS NULL AND file IS NOT NULL;
+    UPDATE files SET content_id = id, file = NULL WHERE content_id IS NULL AND file IS NOT NULL;
+  END IF;
+END $$;
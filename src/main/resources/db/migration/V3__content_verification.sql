@@ -0,0 +1,5 @@
+-- Verificação do conteúdo guardado contra o checksum, feita em segundo plano
+ALTER TABLE file_contents ADD COLUMN IF NOT EXISTS verified_at timestamp(6) with time zone;
+ALTER TABLE file_contents ADD COLUMN IF NOT EXISTS quarantined_at timestamp(6) with time zone;
+
+CREATE INDEX IF NOT EXISTS file_contents_verified_at_idx ON file_contents (verified_at);
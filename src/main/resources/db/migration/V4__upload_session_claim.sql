@@ -0,0 +1,2 @@
+-- Marca a sessão de upload que está sendo concluída, para concluí-la uma vez só
+ALTER TABLE upload_sessions ADD COLUMN IF NOT EXISTS completing_at timestamp(6) with time zone;
@@ -0,0 +1,24 @@
+-- Um conteúdo em quarentena não impede que os mesmos bytes sejam gravados de
+-- novo, então o checksum só é único entre os conteúdos fora de quarentena
+DO $$
+DECLARE
+  constraint_to_drop text;
+BEGIN
+  FOR constraint_to_drop IN
+    SELECT c.conname FROM pg_constraint c
+    JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1]
+    WHERE c.conrelid = 'file_contents'::regclass AND c.contype = 'u'
+      AND cardinality(c.conkey) = 1 AND a.attname = 'checksum'
+  LOOP
+    EXECUTE format('ALTER TABLE file_contents DROP CONSTRAINT %I', constraint_to_drop);
+  END LOOP;
+END $$;
+
+-- Índice simples criado pelo ddl-auto do Hibernate, substituído pelo parcial
+DROP INDEX IF EXISTS file_contents_checksum_idx;
+CREATE UNIQUE INDEX IF NOT EXISTS file_contents_checksum_active_idx ON file_contents (checksum)
+  WHERE quarantined_at IS NULL;
+
+-- Conteúdos em quarentena, lidos periodicamente para recusar as URLs assinadas
+CREATE INDEX IF NOT EXISTS file_contents_quarantined_idx ON file_contents (id)
+  WHERE quarantined_at IS NOT NULL;
@@ -0,0 +1,121 @@
+package br.com.filesave.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.filesave.service.FileService;
+
+/**
+ * The ArchiveTests class downloads files as a ZIP archive, checking that
+ * media types already compressed are stored as they are, that names matching
+ * no file are left out and that the number of files is limited.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ArchiveTests {
+
+	private static final byte[] TEXT = "uma anotação que se repete\n".repeat(50).getBytes(StandardCharsets.UTF_8);
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private FileService fileService;
+
+	private byte[] image;
+
+	private String imageName;
+
+	private String textName;
+
+	@BeforeEach
+	void uploadFiles() throws Exception {
+		image = new byte[2048];
+		new Random().nextBytes(image);
+		imageName = fileService.uploadFile(new MockMultipartFile("file", "photo.png", "image/png", image))
+				.getUniqueName();
+		textName = fileService.uploadFile(new MockMultipartFile("file", "notes.txt", "text/plain", TEXT))
+				.getUniqueName();
+	}
+
+	@Test
+	void storesCompressedMediaTypesAsTheyAre() throws Exception {
+		Map<String, ZipEntry> entries = new LinkedHashMap<>();
+		Map<String, byte[]> contents = new LinkedHashMap<>();
+		readArchive(archive(List.of(textName, imageName)), entries, contents);
+
+		assertEquals(List.of(textName, imageName), new ArrayList<>(entries.keySet()));
+		assertEquals(ZipEntry.DEFLATED, entries.get(textName).getMethod());
+		assertEquals(ZipEntry.STORED, entries.get(imageName).getMethod());
+		assertArrayEquals(TEXT, contents.get(textName));
+		assertArrayEquals(image, contents.get(imageName));
+	}
+
+	@Test
+	void leavesOutNamesThatMatchNoFile() throws Exception {
+		Map<String, ZipEntry> entries = new LinkedHashMap<>();
+		readArchive(archive(List.of("missing.txt", imageName, textName, imageName)), entries, new LinkedHashMap<>());
+
+		assertEquals(List.of(imageName, textName), new ArrayList<>(entries.keySet()));
+	}
+
+	@Test
+	void limitsTheNumberOfFiles() throws Exception {
+		List<String> names = IntStream.rangeClosed(0, 1000).mapToObj(i -> "file-" + i + ".txt").toList();
+
+		mockMvc.perform(post("/api/file/archive").contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsBytes(names)))
+				.andExpect(status().isUnprocessableEntity());
+	}
+
+	private byte[] archive(List<String> names) throws Exception {
+		return mockMvc.perform(post("/api/file/archive").contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsBytes(names)))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/zip"))
+				.andReturn().getResponse().getContentAsByteArray();
+	}
+
+	private static void readArchive(byte[] archive, Map<String, ZipEntry> entries, Map<String, byte[]> contents)
+			throws Exception {
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+			ZipEntry entry;
+			while ((entry = zip.getNextEntry()) != null) {
+				entries.put(entry.getName(), entry);
+				contents.put(entry.getName(), zip.readAllBytes());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package br.com.filesave.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import br.com.filesave.service.FileService;
+
+/**
+ * The ConditionalRequestTests class downloads a file again with the
+ * validators of a previous response, which are answered without the content.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ConditionalRequestTests {
+
+	private static final byte[] CONTENT = "conteúdo que nunca muda".getBytes(StandardCharsets.UTF_8);
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private FileService fileService;
+
+	private String url;
+
+	@BeforeEach
+	void uploadFile() throws Exception {
+		String uniqueName = fileService.uploadFile(new MockMultipartFile("file", "immutable.txt", "text/plain",
+				CONTENT)).getUniqueName();
+		url = "/api/file/download/" + uniqueName;
+	}
+
+	@Test
+	void sendsValidatorsBuiltFromTheChecksumAndTheUploadTime() throws Exception {
+		MockHttpServletResponse response = mockMvc.perform(get(url))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+				.andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+				.andExpect(content().bytes(CONTENT))
+				.andReturn().getResponse();
+
+		String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+		assertEquals("\"" + checksum + "\"", response.getHeader(HttpHeaders.ETAG));
+	}
+
+	@Test
+	void answersAMatchingETagWithNotModified() throws Exception {
+		String etag = mockMvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, etag))
+				.andExpect(content().bytes(new byte[0]));
+		mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+				.andExpect(status().isOk())
+				.andExpect(content().bytes(CONTENT));
+	}
+
+	@Test
+	void answersAnUnchangedUploadTimeWithNotModified() throws Exception {
+		String lastModified = mockMvc.perform(get(url)).andReturn().getResponse()
+				.getHeader(HttpHeaders.LAST_MODIFIED);
+
+		mockMvc.perform(get(url).header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+				.andExpect(status().isNotModified())
+				.andExpect(content().bytes(new byte[0]));
+		mockMvc.perform(get(url).header(HttpHeaders.IF_MODIFIED_SINCE, "Mon, 01 Jan 2024 00:00:00 GMT"))
+				.andExpect(status().isOk())
+				.andExpect(content().bytes(CONTENT));
+	}
+
+	@Test
+	void answersAFailedIfMatchWithPreconditionFailed() throws Exception {
+		String etag = mockMvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get(url).header(HttpHeaders.IF_MATCH, "\"other\""))
+				.andExpect(status().isPreconditionFailed())
+				.andExpect(content().bytes(new byte[0]));
+		mockMvc.perform(get(url).header(HttpHeaders.IF_MATCH, etag))
+				.andExpect(status().isOk())
+				.andExpect(content().bytes(CONTENT));
+	}
+
+}
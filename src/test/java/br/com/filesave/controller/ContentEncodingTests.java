@@ -0,0 +1,118 @@
+package br.com.filesave.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import br.com.filesave.service.FileService;
+
+/**
+ * The ContentEncodingTests class downloads a file stored compressed with
+ * different {@code Accept-Encoding} headers, checking that the stored bytes
+ * are sent only to clients that accept {@code deflate} and that each
+ * representation has its own {@code ETag}.
+ */
+@SpringBootTest(properties = "file.compression.enabled=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ContentEncodingTests {
+
+	private static final byte[] CONTENT = "uma linha de texto que se repete no arquivo\n".repeat(100)
+			.getBytes(StandardCharsets.UTF_8);
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private FileService fileService;
+
+	private String url;
+
+	private String checksum;
+
+	@BeforeEach
+	void uploadFile() throws Exception {
+		String uniqueName = fileService.uploadFile(new MockMultipartFile("file", "repeated.txt", "text/plain",
+				CONTENT)).getUniqueName();
+		url = "/api/file/download/" + uniqueName;
+		checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+	}
+
+	@Test
+	void sendsTheStoredBytesToClientsThatAcceptDeflate() throws Exception {
+		MockHttpServletResponse response = mockMvc.perform(get(url).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "deflate"))
+				.andExpect(header().string(HttpHeaders.ETAG, "\"" + checksum + "-deflate\""))
+				.andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+				.andReturn().getResponse();
+
+		byte[] body = response.getContentAsByteArray();
+		assertTrue(body.length < CONTENT.length);
+		assertArrayEquals(CONTENT, inflate(body));
+	}
+
+	@Test
+	void decompressesForClientsThatDoNotAcceptDeflate() throws Exception {
+		mockMvc.perform(get(url))
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andExpect(header().string(HttpHeaders.ETAG, "\"" + checksum + "\""))
+				.andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+				.andExpect(header().string(HttpHeaders.CONTENT_LENGTH, String.valueOf(CONTENT.length)))
+				.andExpect(content().bytes(CONTENT));
+		mockMvc.perform(get(url).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate;q=0"))
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andExpect(content().bytes(CONTENT));
+	}
+
+	@Test
+	void prefersTheCodingNamedOverTheWildcard() throws Exception {
+		mockMvc.perform(get(url).header(HttpHeaders.ACCEPT_ENCODING, "*;q=0, deflate"))
+				.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "deflate"));
+		mockMvc.perform(get(url).header(HttpHeaders.ACCEPT_ENCODING, "deflate;q=0, *"))
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andExpect(content().bytes(CONTENT));
+		mockMvc.perform(get(url).header(HttpHeaders.ACCEPT_ENCODING, "*"))
+				.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "deflate"));
+	}
+
+	@Test
+	void decompressesRangesOfEncodedContent() throws Exception {
+		mockMvc.perform(get(url).header(HttpHeaders.ACCEPT_ENCODING, "deflate").header(HttpHeaders.RANGE, "bytes=4-13"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andExpect(header().string(HttpHeaders.ETAG, "\"" + checksum + "\""))
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 4-13/" + CONTENT.length))
+				.andExpect(content().bytes(Arrays.copyOfRange(CONTENT, 4, 14)));
+	}
+
+	private static byte[] inflate(byte[] content) throws Exception {
+		try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(content))) {
+			return in.readAllBytes();
+		}
+	}
+
+}
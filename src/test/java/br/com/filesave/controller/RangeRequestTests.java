@@ -0,0 +1,97 @@
+package br.com.filesave.controller;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import br.com.filesave.service.FileService;
+
+/**
+ * The RangeRequestTests class downloads parts of a file with the
+ * {@code Range} and {@code If-Range} headers.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RangeRequestTests {
+
+	private static final String CONTENT = "abcdefghijklmnopqrstuvwxyz";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private FileService fileService;
+
+	private String url;
+
+	@BeforeEach
+	void uploadFile() throws Exception {
+		String uniqueName = fileService.uploadFile(new MockMultipartFile("file", "alphabet.txt", "text/plain",
+				CONTENT.getBytes(StandardCharsets.UTF_8))).getUniqueName();
+		url = "/api/file/download/" + uniqueName;
+	}
+
+	@Test
+	void answersASingleRangeWithPartialContent() throws Exception {
+		mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=2-5"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/26"))
+				.andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "4"))
+				.andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+				.andExpect(content().string("cdef"));
+	}
+
+	@Test
+	void answersOpenAndSuffixRanges() throws Exception {
+		mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=23-"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 23-25/26"))
+				.andExpect(content().string("xyz"));
+		mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=-2"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 24-25/26"))
+				.andExpect(content().string("yz"));
+	}
+
+	@Test
+	void rejectsARangePastTheEnd() throws Exception {
+		mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=26-30"))
+				.andExpect(status().isRequestedRangeNotSatisfiable())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */26"));
+	}
+
+	@Test
+	void answersManyRangesWithTheWholeFile() throws Exception {
+		mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=0-1,4-5"))
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+				.andExpect(content().string(CONTENT));
+	}
+
+	@Test
+	void appliesTheRangeOnlyToTheSameVersion() throws Exception {
+		String etag = mockMvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=0-2").header(HttpHeaders.IF_RANGE, etag))
+				.andExpect(status().isPartialContent())
+				.andExpect(content().string("abc"));
+		mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=0-2").header(HttpHeaders.IF_RANGE, "\"stale\""))
+				.andExpect(status().isOk())
+				.andExpect(content().string(CONTENT));
+	}
+
+}
@@ -0,0 +1,153 @@
+package br.com.filesave.controller;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.filesave.service.FileAccessTracker;
+import br.com.filesave.service.FileService;
+import br.com.filesave.service.IntegrityService;
+import br.com.filesave.service.SignedUrlService;
+
+/**
+ * The SignedUrlTests class downloads files through pre-signed URLs that were
+ * tampered with, expired, signed with another key or point to quarantined
+ * content, which are all rejected, and checks the expiry against the tiering
+ * settings.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SignedUrlTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private FileService fileService;
+
+	@Autowired
+	private FileAccessTracker fileAccessTracker;
+
+	@Autowired
+	private IntegrityService integrityService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private byte[] content;
+
+	private String uniqueName;
+
+	@BeforeEach
+	void uploadFile() throws Exception {
+		content = ("conteúdo assinado " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+		uniqueName = fileService.uploadFile(new MockMultipartFile("file", "signed.txt", "text/plain", content))
+				.getUniqueName();
+	}
+
+	@Test
+	void downloadsTheFileUntilTheUrlExpires() throws Exception {
+		String url = sign(60);
+
+		mockMvc.perform(get(url))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, startsWith("max-age=")))
+				.andExpect(content().bytes(content));
+	}
+
+	@Test
+	void rejectsATamperedSignature() throws Exception {
+		String url = sign(60);
+		char last = url.charAt(url.length() - 1);
+
+		mockMvc.perform(get(url.substring(0, url.length() - 1) + (last == 'A' ? 'B' : 'A')))
+				.andExpect(status().isUnprocessableEntity());
+		mockMvc.perform(get(url.replace("/signed/e", "/signed/f")))
+				.andExpect(status().isUnprocessableEntity());
+		mockMvc.perform(get("/api/file/signed/no-signature"))
+				.andExpect(status().isUnprocessableEntity());
+	}
+
+	@Test
+	void rejectsAnExpiredUrl() throws Exception {
+		String url = sign(1);
+
+		Thread.sleep(1100);
+
+		mockMvc.perform(get(url)).andExpect(status().isUnprocessableEntity());
+	}
+
+	@Test
+	void rejectsQuarantinedContent() throws Exception {
+		String url = sign(60);
+
+		jdbcTemplate.update("""
+				UPDATE file_contents SET quarantined_at = CURRENT_TIMESTAMP
+				WHERE id = (SELECT content_id FROM files WHERE unique_name = ?)""", uniqueName);
+		integrityService.refreshQuarantined();
+
+		mockMvc.perform(get(url)).andExpect(status().isUnprocessableEntity());
+	}
+
+	@Test
+	void rejectsUrlsSignedWithTheRandomKeyOfAnotherInstance() throws Exception {
+		// Sem file.signing.secret, cada instância sorteia a sua chave
+		SignedUrlService otherInstance = new SignedUrlService("", Duration.ofHours(1), Duration.ofDays(7), false,
+				Duration.ofDays(30));
+		ReflectionTestUtils.setField(otherInstance, "fileService", fileService);
+		ReflectionTestUtils.setField(otherInstance, "fileAccessTracker", fileAccessTracker);
+		ReflectionTestUtils.setField(otherInstance, "objectMapper", objectMapper);
+		ReflectionTestUtils.setField(otherInstance, "backendBaseUrl", "http://localhost");
+		String url = otherInstance.sign(uniqueName, Duration.ofMinutes(1)).getUrl()
+				.substring("http://localhost".length());
+
+		mockMvc.perform(get(url)).andExpect(status().isUnprocessableEntity());
+		mockMvc.perform(get(sign(60))).andExpect(status().isOk());
+	}
+
+	@Test
+	void requiresUrlsToExpireBeforeTheContentTurnsCold() {
+		assertThrows(IllegalStateException.class,
+				() -> new SignedUrlService("secret", Duration.ofHours(1), Duration.ofDays(30), true,
+						Duration.ofDays(30)));
+		assertDoesNotThrow(() -> new SignedUrlService("secret", Duration.ofHours(1), Duration.ofDays(30), false,
+				Duration.ofDays(30)));
+		assertDoesNotThrow(() -> new SignedUrlService("secret", Duration.ofHours(1), Duration.ofDays(7), true,
+				Duration.ofDays(30)));
+	}
+
+	private String sign(long expiresIn) throws Exception {
+		String body = mockMvc.perform(post("/api/file/sign/" + uniqueName).param("expiresIn", String.valueOf(expiresIn)))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return objectMapper.readTree(body).get("url").asText().substring("http://localhost".length());
+	}
+
+}
@@ -0,0 +1,255 @@
+package br.com.filesave.controller;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.filesave.DTOs.UploadFileResponse;
+import br.com.filesave.exception.FileException;
+import br.com.filesave.service.UploadSessionService;
+
+/**
+ * The UploadSessionTests class uploads files in chunks of 4 bytes, sent out
+ * of order, again, short or while the session is being completed, and checks
+ * that the file saved has exactly the content of the last chunks received.
+ */
+@SpringBootTest(properties = { "file.upload.session.chunk-size=4B", "spring.servlet.multipart.max-file-size=64B" })
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UploadSessionTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private UploadSessionService uploadSessionService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void deleteFiles() {
+		jdbcTemplate.update("DELETE FROM upload_sessions");
+		jdbcTemplate.update("DELETE FROM file_derivatives");
+		jdbcTemplate.update("DELETE FROM files");
+		jdbcTemplate.update("DELETE FROM file_contents");
+	}
+
+	@Test
+	void completesChunksSentOutOfOrderAndAgain() throws Exception {
+		UUID sessionId = createSession("letters.txt", 10);
+
+		sendChunk(sessionId, 2, "ij").andExpect(status().isNoContent());
+		sendChunk(sessionId, 0, "abcd").andExpect(status().isNoContent());
+		sendChunk(sessionId, 0, "ABCD").andExpect(status().isNoContent());
+		sendChunk(sessionId, 1, "efgh").andExpect(status().isNoContent());
+
+		mockMvc.perform(get("/api/file/upload/sessions/" + sessionId))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.chunkSize").value(4))
+				.andExpect(jsonPath("$.chunkCount").value(3))
+				.andExpect(jsonPath("$.receivedChunks", contains(0, 1, 2)));
+
+		assertEquals("ABCDefghij", download(complete(sessionId)));
+	}
+
+	@Test
+	void rejectsChunksOfTheWrongSize() throws Exception {
+		UUID sessionId = createSession("letters.txt", 6);
+
+		sendChunk(sessionId, 0, "abc").andExpect(status().isUnprocessableEntity());
+		sendChunk(sessionId, 1, "efg").andExpect(status().isUnprocessableEntity());
+		sendChunk(sessionId, 2, "ij").andExpect(status().isUnprocessableEntity());
+
+		mockMvc.perform(get("/api/file/upload/sessions/" + sessionId))
+				.andExpect(jsonPath("$.receivedChunks").isEmpty());
+		mockMvc.perform(post("/api/file/upload/sessions/" + sessionId + "/complete"))
+				.andExpect(status().isUnprocessableEntity());
+	}
+
+	@Test
+	void rejectsASessionLargerThanTheMaximumFileSize() throws Exception {
+		mockMvc.perform(post("/api/file/upload/sessions").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"fileName\": \"big.bin\", \"size\": 65}"))
+				.andExpect(status().isUnprocessableEntity());
+
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM upload_sessions", Long.class));
+	}
+
+	@Test
+	void completesASessionOnce() throws Exception {
+		UUID sessionId = createSession("once.txt", 4);
+		sendChunk(sessionId, 0, "once").andExpect(status().isNoContent());
+
+		List<Callable<UploadFileResponse>> completions = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			completions.add(() -> uploadSessionService.completeSession(sessionId));
+		}
+
+		int completed = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (Future<UploadFileResponse> completion : executor.invokeAll(completions)) {
+				try {
+					completion.get();
+					completed++;
+				} catch (ExecutionException e) {
+					assertInstanceOf(FileException.class, e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(1, completed);
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM files WHERE original_name = 'once.txt'",
+				Long.class));
+		mockMvc.perform(post("/api/file/upload/sessions/" + sessionId + "/complete"))
+				.andExpect(status().isUnprocessableEntity());
+	}
+
+	@Test
+	void waitsForTheChunkBeingWrittenBeforeCompleting() throws Exception {
+		UUID sessionId = createSession("resent.txt", 8);
+		sendChunk(sessionId, 0, "abcd").andExpect(status().isNoContent());
+		sendChunk(sessionId, 1, "efgh").andExpect(status().isNoContent());
+
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch resume = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> chunk = executor.submit(() -> {
+				uploadSessionService.writeChunk(sessionId, 1, new PausingInputStream("WXYZ", 2, writing, resume));
+				return null;
+			});
+			writing.await(5, TimeUnit.SECONDS);
+			Future<UploadFileResponse> completion = executor.submit(() -> uploadSessionService.completeSession(sessionId));
+
+			// A finalização espera a parte que está sendo reenviada, em vez de gravar o arquivo pela metade
+			Thread.sleep(300);
+			assertFalse(completion.isDone());
+
+			resume.countDown();
+			chunk.get(5, TimeUnit.SECONDS);
+			assertEquals("abcdWXYZ", download(completion.get(5, TimeUnit.SECONDS).getUniqueName()));
+		} finally {
+			resume.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void rejectsChunksOfASessionBeingCompleted() throws Exception {
+		UUID sessionId = createSession("claimed.txt", 4);
+		jdbcTemplate.update("UPDATE upload_sessions SET completing_at = CURRENT_TIMESTAMP WHERE id = ?", sessionId);
+
+		sendChunk(sessionId, 0, "late").andExpect(status().isUnprocessableEntity());
+		mockMvc.perform(delete("/api/file/upload/sessions/" + sessionId))
+				.andExpect(status().isUnprocessableEntity());
+	}
+
+	private UUID createSession(String fileName, long size) throws Exception {
+		String body = mockMvc.perform(post("/api/file/upload/sessions").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"fileName\": \"" + fileName + "\", \"contentType\": \"text/plain\", \"size\": " + size + "}"))
+				.andExpect(status().isCreated())
+				.andReturn().getResponse().getContentAsString();
+		return UUID.fromString(objectMapper.readTree(body).get("sessionId").asText());
+	}
+
+	private ResultActions sendChunk(UUID sessionId, int index, String content)
+			throws Exception {
+		return mockMvc.perform(put("/api/file/upload/sessions/" + sessionId + "/chunks/" + index)
+				.contentType(MediaType.APPLICATION_OCTET_STREAM)
+				.content(content.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private String complete(UUID sessionId) throws Exception {
+		String body = mockMvc.perform(post("/api/file/upload/sessions/" + sessionId + "/complete"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return objectMapper.readTree(body).get("uniqueName").asText();
+	}
+
+	private String download(String uniqueName) throws Exception {
+		return mockMvc.perform(get("/api/file/download/" + uniqueName))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN))
+				.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The PausingInputStream class sends the first bytes of a chunk and waits
+	 * before sending the rest, like a slow client.
+	 */
+	private static class PausingInputStream extends InputStream {
+
+		private final byte[] content;
+
+		private final int pauseAt;
+
+		private final CountDownLatch paused;
+
+		private final CountDownLatch resume;
+
+		private int position;
+
+		PausingInputStream(String content, int pauseAt, CountDownLatch paused, CountDownLatch resume) {
+			this.content = content.getBytes(StandardCharsets.UTF_8);
+			this.pauseAt = pauseAt;
+			this.paused = paused;
+			this.resume = resume;
+		}
+
+		@Override
+		public int read() {
+			if (position == pauseAt) {
+				paused.countDown();
+				try {
+					resume.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return position < content.length ? content[position++] & 0xff : -1;
+		}
+
+	}
+
+}
@@ -0,0 +1,137 @@
+package br.com.filesave.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+
+/**
+ * The UploadAdmissionFilterTests class starts uploads while others are still
+ * in progress, checking that they are turned away over the limit of the
+ * client or of the service and that the limits are released when an upload
+ * ends, even when it fails.
+ */
+@SpringBootTest(properties = { "file.admission.enabled=true", "file.admission.max-per-client=1",
+		"file.admission.max-in-flight=100B", "file.admission.retry-after=7s" })
+@ActiveProfiles("test")
+class UploadAdmissionFilterTests {
+
+	@Autowired
+	private UploadAdmissionFilter uploadAdmissionFilter;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	void rejectsASecondUploadFromTheSameClient() throws Exception {
+		double rejected = rejected("client");
+		MockHttpServletResponse[] responses = new MockHttpServletResponse[2];
+
+		MockHttpServletResponse first = upload("10.0.0.1", 10, (request, response) -> {
+			responses[0] = upload("10.0.0.1", 10, admitted());
+			responses[1] = upload("10.0.0.2", 10, admitted());
+		});
+
+		assertEquals(HttpStatus.OK.value(), first.getStatus());
+		assertRejected(responses[0], HttpStatus.TOO_MANY_REQUESTS);
+		assertEquals(HttpStatus.OK.value(), responses[1].getStatus());
+		assertEquals(rejected + 1, rejected("client"));
+	}
+
+	@Test
+	void rejectsUploadsOverTheBytesInFlight() throws Exception {
+		double rejected = rejected("capacity");
+		MockHttpServletResponse[] responses = new MockHttpServletResponse[2];
+
+		upload("10.0.0.1", 80, (request, response) -> {
+			assertEquals(80, inFlight());
+			responses[0] = upload("10.0.0.2", 30, admitted());
+			responses[1] = upload("10.0.0.3", 20, admitted());
+		});
+
+		assertRejected(responses[0], HttpStatus.SERVICE_UNAVAILABLE);
+		assertEquals(HttpStatus.OK.value(), responses[1].getStatus());
+		assertEquals(rejected + 1, rejected("capacity"));
+		assertEquals(0, inFlight());
+	}
+
+	@Test
+	void admitsAnUploadLargerThanTheLimitWhenNoneIsInProgress() throws Exception {
+		AtomicBoolean called = new AtomicBoolean();
+
+		upload("10.0.0.1", 1000, (request, response) -> called.set(true));
+
+		assertTrue(called.get());
+		assertEquals(0, inFlight());
+	}
+
+	@Test
+	void releasesTheLimitsWhenTheUploadFails() throws Exception {
+		assertThrows(IOException.class, () -> upload("10.0.0.1", 90, (request, response) -> {
+			throw new IOException("Connection reset");
+		}));
+
+		assertEquals(0, inFlight());
+		assertEquals(HttpStatus.OK.value(), upload("10.0.0.1", 90, admitted()).getStatus());
+	}
+
+	@Test
+	void letsOtherRequestsThrough() throws Exception {
+		MockHttpServletResponse[] responses = new MockHttpServletResponse[1];
+
+		upload("10.0.0.1", 10, (request, response) -> {
+			MockHttpServletRequest archive = new MockHttpServletRequest("POST", "/api/file/archive");
+			archive.setRemoteAddr("10.0.0.1");
+			responses[0] = new MockHttpServletResponse();
+			uploadAdmissionFilter.doFilter(archive, responses[0], admitted());
+		});
+
+		assertEquals(HttpStatus.OK.value(), responses[0].getStatus());
+	}
+
+	private MockHttpServletResponse upload(String client, int size, FilterChain chain)
+			throws IOException, ServletException {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/file/upload");
+		request.setRemoteAddr(client);
+		request.setContent(new byte[size]);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		uploadAdmissionFilter.doFilter(request, response, chain);
+		return response;
+	}
+
+	private static FilterChain admitted() {
+		return (request, response) -> {
+		};
+	}
+
+	private static void assertRejected(MockHttpServletResponse response, HttpStatus status) throws Exception {
+		assertEquals(status.value(), response.getStatus());
+		assertEquals("7", response.getHeader(HttpHeaders.RETRY_AFTER));
+		assertEquals("close", response.getHeader(HttpHeaders.CONNECTION));
+		assertTrue(response.getContentAsString().contains(status.name()));
+	}
+
+	private double inFlight() {
+		return meterRegistry.get("filesave.upload.in-flight").gauge().value();
+	}
+
+	private double rejected(String reason) {
+		return meterRegistry.get("filesave.upload.rejected").tag("reason", reason).functionCounter().count();
+	}
+
+}
@@ -0,0 +1,183 @@
+package br.com.filesave.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+import br.com.filesave.repositories.FileContentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The FileContentServiceTests class uploads identical content, one upload at
+ * a time and at the same time, and deletes the files sharing it, checking
+ * that the content is stored once and removed with its last reference.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class FileContentServiceTests {
+
+	private static final byte[] CONTENT = "conteúdo repetido".getBytes(StandardCharsets.UTF_8);
+
+	private static final int UPLOADS = 8;
+
+	@Autowired
+	private FileService fileService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@SpyBean
+	private FileContentRepository fileContentRepository;
+
+	@Value("${file.storage.directory}")
+	private Path storageDirectory;
+
+	@BeforeEach
+	void deleteFiles() {
+		jdbcTemplate.update("DELETE FROM file_derivatives");
+		jdbcTemplate.update("DELETE FROM files");
+		jdbcTemplate.update("DELETE FROM file_contents");
+	}
+
+	@Test
+	void storesIdenticalContentOnce() throws Exception {
+		long stored = storedFiles();
+
+		UUID contentId = contentIdOf(upload("a.txt"));
+
+		assertEquals(contentId, contentIdOf(upload("b.txt")));
+		assertEquals(2, referenceCount(contentId));
+		assertEquals(stored + 1, storedFiles());
+	}
+
+	@Test
+	void deletesTheContentWithItsLastReference() throws Exception {
+		String first = upload("a.txt");
+		String second = upload("b.txt");
+		UUID contentId = contentIdOf(first);
+		Path stored = storedPath(contentId);
+
+		fileService.deleteFile(first);
+		assertEquals(1, referenceCount(contentId));
+		assertTrue(Files.exists(stored));
+
+		fileService.deleteFile(second);
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM file_contents WHERE id = ?",
+				Long.class, contentId));
+		assertFalse(Files.exists(stored));
+	}
+
+	@Test
+	void retriesWhenTheSameContentIsStoredConcurrently() throws Exception {
+		UUID contentId = contentIdOf(upload("a.txt"));
+		long stored = storedFiles();
+		double retries = meterRegistry.counter("filesave.file.store.retries").count();
+
+		// A busca não vê o conteúdo gravado pelo outro upload, como se ele terminasse logo depois dela
+		doReturn(Optional.empty()).doAnswer(invocation -> fileContentRepository.findById(contentId))
+				.when(fileContentRepository).findFirstByChecksumAndQuarantinedAtIsNull(checksum(CONTENT));
+
+		assertEquals(contentId, contentIdOf(upload("b.txt")));
+
+		assertEquals(2, referenceCount(contentId));
+		assertEquals(stored, storedFiles());
+		assertEquals(retries + 1, meterRegistry.counter("filesave.file.store.retries").count());
+	}
+
+	@Test
+	void concurrentIdenticalUploadsShareOneContent() throws Exception {
+		List<Callable<String>> uploads = new ArrayList<>();
+		for (int i = 0; i < UPLOADS; i++) {
+			String name = "copy-" + i + ".txt";
+			uploads.add(() -> upload(name));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(UPLOADS);
+		try {
+			for (Future<String> upload : executor.invokeAll(uploads)) {
+				upload.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		List<Long> references = jdbcTemplate.queryForList("SELECT reference_count FROM file_contents", Long.class);
+		assertEquals(List.of((long) UPLOADS), references);
+	}
+
+	@Test
+	void storesQuarantinedContentAgain() throws Exception {
+		UUID quarantined = contentIdOf(upload("a.txt"));
+		jdbcTemplate.update("UPDATE file_contents SET quarantined_at = CURRENT_TIMESTAMP WHERE id = ?", quarantined);
+
+		UUID contentId = contentIdOf(upload("b.txt"));
+
+		assertNotEquals(quarantined, contentId);
+		assertEquals(1, referenceCount(contentId));
+	}
+
+	private String upload(String originalName) throws Exception {
+		return fileService.uploadFile(new MockMultipartFile("file", originalName, "text/plain", CONTENT))
+				.getUniqueName();
+	}
+
+	private UUID contentIdOf(String uniqueName) {
+		return jdbcTemplate.queryForObject("SELECT content_id FROM files WHERE unique_name = ?", UUID.class,
+				uniqueName);
+	}
+
+	private long referenceCount(UUID contentId) {
+		return jdbcTemplate.queryForObject("SELECT reference_count FROM file_contents WHERE id = ?", Long.class,
+				contentId);
+	}
+
+	private Path storedPath(UUID contentId) {
+		String storageKey = jdbcTemplate.queryForObject("SELECT storage_key FROM file_contents WHERE id = ?",
+				String.class, contentId);
+		return storageDirectory.resolve(storageKey.substring(0, 2)).resolve(storageKey);
+	}
+
+	private long storedFiles() throws Exception {
+		if (!Files.exists(storageDirectory)) {
+			return 0;
+		}
+		try (Stream<Path> files = Files.walk(storageDirectory)) {
+			return files.filter(Files::isRegularFile).count();
+		}
+	}
+
+	private static String checksum(byte[] content) throws Exception {
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+	}
+
+}
@@ -0,0 +1,137 @@
+package br.com.filesave.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import br.com.filesave.DTOs.FileMetadataResponse;
+import br.com.filesave.DTOs.FilePageResponse;
+import br.com.filesave.DTOs.FileSearchRequest;
+import br.com.filesave.exception.FileException;
+
+/**
+ * The FileListingTests class pages through the file listing on H2, with files
+ * sharing the same upload time and files with no upload time at all, and
+ * checks that every file is listed once, in order.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class FileListingTests {
+
+	private static final Instant OLDER = Instant.parse("2024-01-01T00:00:00Z");
+
+	private static final Instant NEWER = Instant.parse("2024-06-01T00:00:00Z");
+
+	@Autowired
+	private FileService fileService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void deleteFiles() {
+		jdbcTemplate.update("DELETE FROM files");
+	}
+
+	@Test
+	void pagesThroughTiesAndMissingUploadTimesWithoutDuplicatesOrGaps() {
+		// Os ids são pequenos para a ordem do UUID ser a mesma no Java e no banco
+		insert(1, OLDER);
+		insert(2, NEWER);
+		insert(3, null);
+		insert(4, NEWER);
+		insert(5, OLDER);
+		insert(6, null);
+		insert(7, NEWER);
+		insert(8, OLDER);
+		insert(9, null);
+
+		List<String> expected = List.of("file-9", "file-6", "file-3", "file-7", "file-4", "file-2", "file-8",
+				"file-5", "file-1");
+		for (int limit = 1; limit <= expected.size() + 1; limit++) {
+			assertEquals(expected, listAll(limit), "limit " + limit);
+		}
+	}
+
+	@Test
+	void lastPageHasNoCursor() {
+		for (int i = 1; i <= 4; i++) {
+			insert(i, NEWER);
+		}
+
+		FilePageResponse single = fileService.listFiles(search(null, 4));
+		assertEquals(4, single.getFiles().size());
+		assertNull(single.getNextCursor());
+
+		FilePageResponse first = fileService.listFiles(search(null, 3));
+		assertEquals(3, first.getFiles().size());
+		assertNotNull(first.getNextCursor());
+		FilePageResponse last = fileService.listFiles(search(first.getNextCursor(), 3));
+		assertEquals(List.of("file-1"), names(last));
+		assertNull(last.getNextCursor());
+	}
+
+	@Test
+	void filesUploadedAfterTheFirstPageDoNotShiftTheNextOne() {
+		insert(1, OLDER);
+		insert(2, OLDER);
+		insert(3, OLDER);
+
+		FilePageResponse first = fileService.listFiles(search(null, 2));
+		insert(4, NEWER);
+		insert(5, null);
+		FilePageResponse second = fileService.listFiles(search(first.getNextCursor(), 2));
+
+		assertEquals(List.of("file-3", "file-2"), names(first));
+		assertEquals(List.of("file-1"), names(second));
+	}
+
+	@Test
+	void rejectsAnInvalidCursor() {
+		assertThrows(FileException.class, () -> fileService.listFiles(search("not a cursor", 2)));
+	}
+
+	private List<String> listAll(int limit) {
+		List<String> names = new ArrayList<>();
+		String cursor = null;
+		do {
+			FilePageResponse page = fileService.listFiles(search(cursor, limit));
+			names.addAll(names(page));
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		return names;
+	}
+
+	private FileSearchRequest search(String cursor, int limit) {
+		FileSearchRequest search = new FileSearchRequest();
+		search.setCursor(cursor);
+		search.setLimit(limit);
+		return search;
+	}
+
+	private List<String> names(FilePageResponse page) {
+		return page.getFiles().stream().map(FileMetadataResponse::getUniqueName).toList();
+	}
+
+	private void insert(long id, Instant uploadedAt) {
+		jdbcTemplate.update("""
+				INSERT INTO files (id, unique_name, original_name, type, size, uploaded_at, read_count)
+				VALUES (?, ?, ?, 'text/plain', 1, ?, 0)""",
+				new UUID(0, id), "file-" + id, "file-" + id, uploadedAt != null ? Timestamp.from(uploadedAt) : null);
+	}
+
+}
@@ -0,0 +1,97 @@
+package br.com.filesave.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The FileNameCounterTests class uploads files with the same name, at the
+ * same time and after files named before the counters existed, and checks
+ * that every file gets a unique name.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class FileNameCounterTests {
+
+	private static final int UPLOADS = 16;
+
+	@Autowired
+	private FileService fileService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void deleteFiles() {
+		jdbcTemplate.update("DELETE FROM file_derivatives");
+		jdbcTemplate.update("DELETE FROM files");
+		jdbcTemplate.update("DELETE FROM file_contents");
+		jdbcTemplate.update("DELETE FROM file_name_counters");
+	}
+
+	@Test
+	void allocatesDistinctCountersToConcurrentUploadsOfTheSameName() throws Exception {
+		List<Callable<String>> uploads = new ArrayList<>();
+		for (int i = 0; i < UPLOADS; i++) {
+			byte[] content = ("relatório " + i).getBytes(StandardCharsets.UTF_8);
+			uploads.add(() -> upload("Relatório Final.pdf", content));
+		}
+
+		Set<String> names = new HashSet<>();
+		ExecutorService executor = Executors.newFixedThreadPool(UPLOADS);
+		try {
+			for (Future<String> name : executor.invokeAll(uploads)) {
+				names.add(name.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		Set<String> expected = new HashSet<>();
+		for (int i = 1; i <= UPLOADS; i++) {
+			expected.add("relatorio-final-" + i + ".pdf");
+		}
+		assertEquals(expected, names);
+	}
+
+	@Test
+	void startsAfterTheNamesGivenBeforeTheCounterExisted() throws Exception {
+		insertLegacyFile("contrato-1.pdf");
+		insertLegacyFile("contrato-2.pdf");
+		insertLegacyFile("contrato-1.txt");
+
+		assertEquals("contrato-3.pdf", upload("contrato.pdf", new byte[] { 1 }));
+		assertEquals("contrato-4.pdf", upload("contrato.pdf", new byte[] { 2 }));
+		assertEquals("contrato-2.txt", upload("contrato.txt", new byte[] { 3 }));
+		assertEquals("outro-1.pdf", upload("outro.pdf", new byte[] { 4 }));
+	}
+
+	private String upload(String originalName, byte[] content) throws Exception {
+		return fileService.uploadFile(new MockMultipartFile("file", originalName, "application/pdf", content))
+				.getUniqueName();
+	}
+
+	private void insertLegacyFile(String uniqueName) {
+		jdbcTemplate.update("""
+				INSERT INTO files (id, unique_name, original_name, type, size, read_count)
+				VALUES (?, ?, ?, 'application/pdf', 1, 0)""", UUID.randomUUID(), uniqueName, uniqueName);
+	}
+
+}
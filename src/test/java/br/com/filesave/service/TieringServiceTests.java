@@ -0,0 +1,240 @@
+package br.com.filesave.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import br.com.filesave.storage.SegmentStore;
+
+/**
+ * The TieringServiceTests class moves contents to the cold segments and back,
+ * deletes a content while it is being moved and deletes most of the contents
+ * of a segment, checking that the contents stay readable, also through signed
+ * URLs minted before they moved, and that the space of the segments is
+ * reclaimed. The job is run by the tests, since its first scheduled run is an
+ * interval away.
+ */
+@SpringBootTest(properties = { "file.tiering.enabled=true", "file.tiering.cold-after=1h",
+		"file.tiering.segment-size=1KB", "file.tiering.directory=${java.io.tmpdir}/filesave-test/tiering",
+		"file.signing.max-expiry=30m", "file.signing.default-expiry=10m" })
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TieringServiceTests {
+
+	private static final int LARGE = 3000;
+
+	private static final int SMALL = 100;
+
+	@Autowired
+	private TieringService tieringService;
+
+	@Autowired
+	private FileService fileService;
+
+	@Autowired
+	private FileAccessTracker fileAccessTracker;
+
+	@Autowired
+	private SignedUrlService signedUrlService;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@SpyBean
+	private SegmentStore segmentStore;
+
+	@Value("${file.tiering.directory}")
+	private Path directory;
+
+	private final Random random = new Random();
+
+	@BeforeEach
+	void deleteFiles() {
+		jdbcTemplate.update("DELETE FROM file_derivatives");
+		jdbcTemplate.update("DELETE FROM files");
+		jdbcTemplate.update("DELETE FROM file_contents");
+	}
+
+	@Test
+	void movesAContentToTheSegmentsAndBackAgain() throws Exception {
+		byte[] content = randomBytes(LARGE);
+		String name = upload(content);
+		UUID contentId = contentIdOf(name);
+
+		moveColdContent();
+		Integer first = segmentOf(contentId);
+		assertNotNull(first);
+		assertNull(storageKeyOf(contentId));
+
+		assertArrayEquals(content, download(name));
+		awaitPromotion(contentId);
+		assertNotNull(storageKeyOf(contentId));
+		assertArrayEquals(content, download(name));
+
+		moveColdContent();
+		Integer second = segmentOf(contentId);
+		assertNotNull(second);
+		assertNotEquals(first, second);
+
+		// O primeiro segmento foi encontrado vazio nesta execução e só é apagado na seguinte
+		assertTrue(Files.exists(segmentFile(first)));
+		tieringService.moveColdContent();
+		assertFalse(Files.exists(segmentFile(first)));
+		assertArrayEquals(content, download(name));
+	}
+
+	@Test
+	void servesSignedUrlsOfContentMovedAfterSigning() throws Exception {
+		byte[] content = randomBytes(LARGE);
+		String name = upload(content);
+		UUID contentId = contentIdOf(name);
+		moveColdContent();
+		Integer signedSegment = segmentOf(contentId);
+		String url = signedUrlService.sign(name, null).getUrl().substring("http://localhost".length());
+
+		download(name);
+		awaitPromotion(contentId);
+		moveColdContent();
+		tieringService.moveColdContent();
+		assertFalse(Files.exists(segmentFile(signedSegment)));
+
+		assertArrayEquals(content, mockMvc.perform(get(url))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsByteArray());
+	}
+
+	@Test
+	void discardsTheContentDeletedWhileItIsMoved() throws Exception {
+		String name = upload(randomBytes(LARGE));
+		UUID contentId = contentIdOf(name);
+		SegmentStore.Location[] appended = new SegmentStore.Location[1];
+		doAnswer(invocation -> {
+			fileService.deleteFile(name);
+			appended[0] = (SegmentStore.Location) invocation.callRealMethod();
+			return appended[0];
+		}).when(segmentStore).append(eq(contentId), any(Path.class));
+
+		moveColdContent();
+
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM file_contents WHERE id = ?", Long.class,
+				contentId));
+		assertNotNull(appended[0]);
+		assertEquals(appended[0].offset() - SegmentStore.HEADER_SIZE, Files.size(segmentFile(appended[0].segment())));
+	}
+
+	@Test
+	void compactsASegmentMostlyUnused() throws Exception {
+		// O conteúdo grande enche o segmento atual, então os pequenos vão juntos para um segmento novo
+		upload(randomBytes(LARGE));
+		moveColdContent();
+
+		byte[] kept = randomBytes(SMALL);
+		String keptName = upload(kept);
+		String[] deleted = { upload(randomBytes(SMALL)), upload(randomBytes(SMALL)), upload(randomBytes(SMALL)) };
+		moveColdContent();
+		UUID keptId = contentIdOf(keptName);
+		Integer segment = segmentOf(keptId);
+		for (String name : deleted) {
+			assertEquals(segment, segmentOf(contentIdOf(name)));
+			fileService.deleteFile(name);
+		}
+
+		// Outro conteúdo grande fecha o segmento, que passa a poder ser compactado
+		upload(randomBytes(LARGE));
+		moveColdContent();
+
+		Integer compacted = segmentOf(keptId);
+		assertNotNull(compacted);
+		assertNotEquals(segment, compacted);
+		tieringService.moveColdContent();
+		tieringService.moveColdContent();
+		assertFalse(Files.exists(segmentFile(segment)));
+		assertEquals(compacted, segmentOf(keptId));
+		// Lido do segmento novo, já que o conteúdo volta para o armazenamento só depois da leitura
+		assertArrayEquals(kept, download(keptName));
+	}
+
+	private void moveColdContent() {
+		// As leituras em memória são gravadas antes de os arquivos envelhecerem, para não os deixar quentes
+		fileAccessTracker.flush();
+		Timestamp longAgo = Timestamp.from(Instant.now().minus(Duration.ofDays(1)));
+		jdbcTemplate.update("UPDATE files SET uploaded_at = ?, last_read_at = ?", longAgo, longAgo);
+		tieringService.moveColdContent();
+	}
+
+	private void awaitPromotion(UUID contentId) throws InterruptedException {
+		for (int i = 0; i < 50 && segmentOf(contentId) != null; i++) {
+			Thread.sleep(100);
+		}
+		assertNull(segmentOf(contentId));
+	}
+
+	private String upload(byte[] content) throws Exception {
+		return fileService.uploadFile(new MockMultipartFile("file", "cold.bin", "application/octet-stream", content))
+				.getUniqueName();
+	}
+
+	private byte[] download(String uniqueName) throws Exception {
+		return mockMvc.perform(get("/api/file/download/" + uniqueName))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsByteArray();
+	}
+
+	private UUID contentIdOf(String uniqueName) {
+		return jdbcTemplate.queryForObject("SELECT content_id FROM files WHERE unique_name = ?", UUID.class,
+				uniqueName);
+	}
+
+	private Integer segmentOf(UUID contentId) {
+		return jdbcTemplate.queryForObject("SELECT segment FROM file_contents WHERE id = ?", Integer.class,
+				contentId);
+	}
+
+	private String storageKeyOf(UUID contentId) {
+		return jdbcTemplate.queryForObject("SELECT storage_key FROM file_contents WHERE id = ?", String.class,
+				contentId);
+	}
+
+	private Path segmentFile(int segment) {
+		return directory.resolve(String.format("%08d.segment", segment));
+	}
+
+	private byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+}
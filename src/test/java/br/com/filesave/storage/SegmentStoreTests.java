@@ -0,0 +1,139 @@
+package br.com.filesave.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * The SegmentStoreTests class appends contents to segments and reads them
+ * back, in whole and in ranges next to the header of each content, and
+ * discards and deletes what is no longer used.
+ */
+class SegmentStoreTests {
+
+	private static final byte[] FIRST = "o primeiro conteúdo".getBytes(StandardCharsets.UTF_8);
+
+	private static final byte[] SECOND = "o segundo conteúdo, um pouco maior".getBytes(StandardCharsets.UTF_8);
+
+	@TempDir
+	private Path directory;
+
+	private SegmentStore segmentStore;
+
+	@BeforeEach
+	void createStore() {
+		segmentStore = new SegmentStore(directory, DataSize.ofBytes(128));
+	}
+
+	@AfterEach
+	void closeStore() {
+		segmentStore.destroy();
+	}
+
+	@Test
+	void writesEachContentAfterAHeaderWithItsIdAndLength() throws Exception {
+		UUID contentId = UUID.randomUUID();
+
+		SegmentStore.Location first = segmentStore.append(contentId, file(FIRST));
+		SegmentStore.Location second = segmentStore.append(UUID.randomUUID(), file(SECOND));
+
+		assertEquals(SegmentStore.HEADER_SIZE, first.offset());
+		assertEquals(first.offset() + FIRST.length + SegmentStore.HEADER_SIZE, second.offset());
+
+		ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(segment(first.segment())), 0, SegmentStore.HEADER_SIZE);
+		assertEquals(contentId, new UUID(header.getLong(), header.getLong()));
+		assertEquals(FIRST.length, header.getLong());
+	}
+
+	@Test
+	void readsRangesWithoutTheHeaders() throws Exception {
+		SegmentStore.Location first = segmentStore.append(UUID.randomUUID(), file(FIRST));
+		SegmentStore.Location second = segmentStore.append(UUID.randomUUID(), file(SECOND));
+
+		assertArrayEquals(FIRST, read(first, 0, FIRST.length));
+		assertArrayEquals(SECOND, read(second, 0, SECOND.length));
+		// O último byte do primeiro conteúdo e o primeiro do segundo ficam dos dois lados do cabeçalho
+		assertArrayEquals(Arrays.copyOfRange(FIRST, FIRST.length - 1, FIRST.length), read(first, FIRST.length - 1, 1));
+		assertArrayEquals(Arrays.copyOfRange(SECOND, 0, 1), read(second, 0, 1));
+		assertArrayEquals(Arrays.copyOfRange(SECOND, 3, 10), read(second, 3, 7));
+	}
+
+	@Test
+	void failsToReadPastTheEndOfTheSegment() throws Exception {
+		SegmentStore.Location location = segmentStore.append(UUID.randomUUID(), file(FIRST));
+
+		assertThrows(IOException.class, () -> read(location, 0, FIRST.length + 1));
+	}
+
+	@Test
+	void startsANewSegmentWhenTheContentDoesNotFit() throws Exception {
+		SegmentStore.Location first = segmentStore.append(UUID.randomUUID(), file(SECOND));
+		SegmentStore.Location second = segmentStore.append(UUID.randomUUID(), file(SECOND));
+		SegmentStore.Location third = segmentStore.append(UUID.randomUUID(), file(SECOND));
+
+		assertEquals(first.segment(), second.segment());
+		assertEquals(first.segment() + 1, third.segment());
+		assertEquals(Map.of(first.segment(), Files.size(segment(first.segment()))), segmentStore.sealedSegments());
+	}
+
+	@Test
+	void discardsOnlyTheLastContentAppended() throws Exception {
+		SegmentStore.Location first = segmentStore.append(UUID.randomUUID(), file(FIRST));
+		SegmentStore.Location second = segmentStore.append(UUID.randomUUID(), file(FIRST));
+
+		assertFalse(segmentStore.discard(first, FIRST.length));
+		assertTrue(segmentStore.discard(second, FIRST.length));
+
+		assertEquals(second.offset() - SegmentStore.HEADER_SIZE, Files.size(segment(second.segment())));
+		assertEquals(second, segmentStore.append(UUID.randomUUID(), file(SECOND)));
+		assertArrayEquals(SECOND, read(second, 0, SECOND.length));
+	}
+
+	@Test
+	void deletesOnlySealedSegments() throws Exception {
+		SegmentStore.Location sealed = segmentStore.append(UUID.randomUUID(), file(SECOND));
+		read(sealed, 0, SECOND.length);
+		segmentStore.append(UUID.randomUUID(), file(SECOND));
+		SegmentStore.Location current = segmentStore.append(UUID.randomUUID(), file(SECOND));
+
+		assertThrows(IllegalArgumentException.class, () -> segmentStore.delete(current.segment()));
+		segmentStore.delete(sealed.segment());
+
+		assertFalse(Files.exists(segment(sealed.segment())));
+		assertTrue(segmentStore.sealedSegments().isEmpty());
+		assertThrows(IOException.class, () -> read(sealed, 0, SECOND.length));
+	}
+
+	private Path file(byte[] content) throws IOException {
+		return Files.write(Files.createTempFile(directory, "content-", ".tmp"), content);
+	}
+
+	private Path segment(int segment) {
+		return directory.resolve(String.format("%08d.segment", segment));
+	}
+
+	private byte[] read(SegmentStore.Location location, long position, long length) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		segmentStore.transferTo(location.segment(), location.offset(), position, length, out);
+		return out.toByteArray();
+	}
+
+}
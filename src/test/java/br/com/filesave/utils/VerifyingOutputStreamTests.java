@@ -0,0 +1,98 @@
+package br.com.filesave.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.Test;
+
+import br.com.filesave.exception.ChecksumMismatchException;
+
+/**
+ * The VerifyingOutputStreamTests class writes matching, corrupted, short and
+ * long contents through a VerifyingOutputStream and checks what reaches the
+ * underlying stream.
+ */
+class VerifyingOutputStreamTests {
+
+	private static final byte[] CONTENT = "conteúdo conferido pelo checksum".getBytes(StandardCharsets.UTF_8);
+
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+	@Test
+	void writesMatchingContentInFull() throws IOException {
+		VerifyingOutputStream verifying = new VerifyingOutputStream(out, CONTENT.length, checksum(CONTENT));
+
+		verifying.write(CONTENT, 0, 10);
+		verifying.write(CONTENT[10]);
+		verifying.write(CONTENT, 11, CONTENT.length - 11);
+		verifying.verify();
+
+		assertArrayEquals(CONTENT, out.toByteArray());
+	}
+
+	@Test
+	void holdsBackTheLastByteOfCorruptedContent() throws IOException {
+		byte[] corrupted = CONTENT.clone();
+		corrupted[3] ^= 1;
+		VerifyingOutputStream verifying = new VerifyingOutputStream(out, CONTENT.length, checksum(CONTENT));
+
+		verifying.write(corrupted, 0, 10);
+		assertThrows(ChecksumMismatchException.class,
+				() -> verifying.write(corrupted, 10, corrupted.length - 10));
+
+		assertArrayEquals(Arrays.copyOf(corrupted, corrupted.length - 1), out.toByteArray());
+	}
+
+	@Test
+	void rejectsShortContentOnVerify() throws IOException {
+		VerifyingOutputStream verifying = new VerifyingOutputStream(out, CONTENT.length, checksum(CONTENT));
+
+		verifying.write(CONTENT, 0, CONTENT.length - 1);
+
+		assertThrows(ChecksumMismatchException.class, verifying::verify);
+	}
+
+	@Test
+	void rejectsLongContentWithoutWritingTheExtraBytes() throws IOException {
+		VerifyingOutputStream verifying = new VerifyingOutputStream(out, CONTENT.length - 1,
+				checksum(Arrays.copyOf(CONTENT, CONTENT.length - 1)));
+
+		verifying.write(CONTENT, 0, 10);
+		assertThrows(ChecksumMismatchException.class, () -> verifying.write(CONTENT, 10, CONTENT.length - 10));
+
+		assertArrayEquals(Arrays.copyOf(CONTENT, 10), out.toByteArray());
+	}
+
+	@Test
+	void repeatsTheFirstFailure() throws IOException {
+		byte[] corrupted = CONTENT.clone();
+		corrupted[0] ^= 1;
+		VerifyingOutputStream verifying = new VerifyingOutputStream(out, CONTENT.length, checksum(CONTENT));
+
+		ChecksumMismatchException failure = assertThrows(ChecksumMismatchException.class,
+				() -> verifying.write(corrupted));
+
+		// Como o FileChannel.transferTo, que tenta de novo depois de uma escrita parcial
+		assertSame(failure, assertThrows(ChecksumMismatchException.class, () -> verifying.write(corrupted, 0, 1)));
+		assertSame(failure, assertThrows(ChecksumMismatchException.class, verifying::verify));
+		assertArrayEquals(Arrays.copyOf(corrupted, corrupted.length - 1), out.toByteArray());
+	}
+
+	private static String checksum(byte[] content) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}